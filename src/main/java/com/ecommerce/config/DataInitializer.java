@@ -1,8 +1,8 @@
 package com.ecommerce.config;
 
+import com.ecommerce.model.Money;
 import com.ecommerce.model.Product;
 import com.ecommerce.repository.ProductRepository;
-import java.math.BigDecimal;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Component;
@@ -23,9 +23,9 @@ public class DataInitializer implements CommandLineRunner {
     public void run(String... args) throws Exception {
         // Initialize sample products
         if (productRepository.count() == 0) {
-            productRepository.save(new Product(null, "Laptop", new BigDecimal("59.99"), 10));
-            productRepository.save(new Product(null, "Mouse", new BigDecimal("29.99"), 50));
-            productRepository.save(new Product(null, "Keyboard", new BigDecimal("39.99"), 25));
+            productRepository.save(new Product(null, "Laptop", Money.of("59.99"), 10));
+            productRepository.save(new Product(null, "Mouse", Money.of("29.99"), 50));
+            productRepository.save(new Product(null, "Keyboard", Money.of("39.99"), 25));
 
             System.out.println("Sample products initialized:");
             System.out.println("- Product 1: Laptop ($59.99, Stock: 10)");
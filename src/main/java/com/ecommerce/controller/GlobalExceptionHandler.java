@@ -1,9 +1,14 @@
 package com.ecommerce.controller;
 
+import com.ecommerce.exception.CatalogImportException;
+import com.ecommerce.exception.IdempotencyKeyException;
+import com.ecommerce.exception.InvalidCursorException;
 import com.ecommerce.exception.OrderNotFoundException;
+import com.ecommerce.exception.OrderQueueFullException;
 import com.ecommerce.exception.OutOfStockException;
 import com.ecommerce.exception.PaymentFailedException;
 import com.ecommerce.exception.ProductNotFoundException;
+import com.ecommerce.exception.ReservationExpiredException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -46,6 +51,42 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
     }
 
+    @ExceptionHandler(ReservationExpiredException.class)
+    public ResponseEntity<Map<String, String>> handleReservationExpired(ReservationExpiredException e) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", e.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+    }
+
+    @ExceptionHandler(OrderQueueFullException.class)
+    public ResponseEntity<Map<String, String>> handleOrderQueueFull(OrderQueueFullException e) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header("Retry-After", "1").body(error);
+    }
+
+    @ExceptionHandler(IdempotencyKeyException.class)
+    public ResponseEntity<Map<String, String>> handleIdempotencyKey(IdempotencyKeyException e) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", e.getMessage());
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(error);
+    }
+
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<Map<String, String>> handleInvalidCursor(InvalidCursorException e) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", e.getMessage());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
+    }
+
+    @ExceptionHandler(CatalogImportException.class)
+    public ResponseEntity<Map<String, Object>> handleCatalogImport(CatalogImportException e) {
+        Map<String, Object> error = new HashMap<>();
+        error.put("error", e.getMessage());
+        error.put("importedRows", e.getImportedRows());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<Map<String, String>> handleValidationErrors(MethodArgumentNotValidException e) {
         Map<String, String> errors = new HashMap<>();
@@ -1,10 +1,25 @@
 package com.ecommerce.controller;
 
+import com.ecommerce.dto.ImportResponse;
+import com.ecommerce.model.Money;
 import com.ecommerce.model.Product;
+import com.ecommerce.service.CatalogImportService;
 import com.ecommerce.service.InventoryService;
+import com.ecommerce.service.ProductCache;
+import com.ecommerce.service.ReservationLedger;
+import com.ecommerce.service.StockLevelPublisher;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 
 // REST controller for inventory management operations.
@@ -13,11 +28,26 @@ import org.springframework.web.bind.annotation.*;
 @RequestMapping("/inventory")
 public class InventoryController {
 
+    // Upper bound on IDs per bulk lookup, so one request cannot build an unbounded IN list
+    private static final int MAX_BULK_IDS = 200;
+    // Upper bound on hot-mode sub-buckets; each one takes a 64-byte cache line
+    private static final int MAX_HOT_BUCKETS = 1024;
+
     private final InventoryService inventoryService;
+    private final ReservationLedger reservationLedger;
+    private final ProductCache productCache;
+    private final CatalogImportService catalogImportService;
+    private final StockLevelPublisher stockLevelPublisher;
 
     @Autowired
-    public InventoryController(InventoryService inventoryService) {
+    public InventoryController(InventoryService inventoryService, ReservationLedger reservationLedger,
+                               ProductCache productCache, CatalogImportService catalogImportService,
+                               StockLevelPublisher stockLevelPublisher) {
         this.inventoryService = inventoryService;
+        this.reservationLedger = reservationLedger;
+        this.productCache = productCache;
+        this.catalogImportService = catalogImportService;
+        this.stockLevelPublisher = stockLevelPublisher;
     }
 
     
@@ -29,36 +59,214 @@ public class InventoryController {
     @GetMapping("/{productId}")
     public ResponseEntity<ProductResponse> getProductStock(@PathVariable Long productId) {
         Product product = inventoryService.getProduct(productId);
-        ProductResponse response = new ProductResponse(
+        return ResponseEntity.ok(toResponse(product));
+    }
+
+    
+    // Get several products at once, e.g. for a listing page. All products are resolved with one
+    // query (or from the cache), and availableQuantity already excludes reserved stock.
+    
+    // @param ids the product IDs, e.g. ?ids=1,2,3; duplicates are returned once
+    // @return product information in the order the IDs were given
+    
+    @GetMapping(params = "ids")
+    public ResponseEntity<List<ProductResponse>> getProductsStock(@RequestParam List<Long> ids) {
+        Set<Long> productIds = new LinkedHashSet<>(ids);
+        if (productIds.isEmpty() || productIds.size() > MAX_BULK_IDS) {
+            return ResponseEntity.badRequest().build();
+        }
+        Map<Long, Product> products = inventoryService.getProducts(productIds);
+        List<ProductResponse> response = new ArrayList<>(productIds.size());
+        for (Long productId : productIds) {
+            response.add(toResponse(products.get(productId)));
+        }
+        return ResponseEntity.ok(response);
+    }
+
+    
+    // Stream stock level changes as server-sent events, instead of polling GET /inventory/{productId}.
+    // Changes are coalesced, so each product emits at most one event per inventory.stream.interval.
+    
+    // @param ids products to follow, e.g. ?ids=1,2,3; omit to follow every product
+    // @return the event stream; the current level of each requested product comes first
+    
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamStockLevels(@RequestParam(required = false) List<Long> ids) {
+        Set<Long> productIds = ids == null ? Set.of() : new LinkedHashSet<>(ids);
+        if (productIds.size() > MAX_BULK_IDS) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(stockLevelPublisher.subscribe(productIds));
+    }
+
+    
+    // Import or restock products from a CSV upload. The body is streamed, not buffered.
+    
+    // @param body CSV with a header line naming id, name, price and stockQuantity
+    // @return rows imported and throughput
+    
+    @PostMapping(value = "/import", consumes = "text/csv")
+    public ResponseEntity<ImportResponse> importCsv(InputStream body) {
+        return ResponseEntity.ok(catalogImportService.importCsv(body));
+    }
+
+    
+    // Import or restock products from a newline-delimited JSON upload. The body is streamed.
+    
+    // @param body one product object per line
+    // @return rows imported and throughput
+    
+    @PostMapping(value = "/import", consumes = "application/x-ndjson")
+    public ResponseEntity<ImportResponse> importNdjson(InputStream body) {
+        return ResponseEntity.ok(catalogImportService.importNdjson(body));
+    }
+
+    
+    // Switch a product to hot mode ahead of a flash sale.
+    
+    // @param productId the product ID
+    // @param buckets number of sub-buckets to split the available stock over, 1 to 1024
+    // @return product information
+    
+    @PutMapping("/{productId}/hot")
+    public ResponseEntity<ProductResponse> enableHotMode(@PathVariable Long productId,
+                                                         @RequestParam(defaultValue = "${inventory.hot-mode.buckets:16}") int buckets) {
+        if (buckets < 1 || buckets > MAX_HOT_BUCKETS) {
+            return ResponseEntity.badRequest().build();
+        }
+        inventoryService.enableHotMode(productId, buckets);
+        return ResponseEntity.ok(toResponse(inventoryService.getProduct(productId)));
+    }
+
+    
+    // Switch a product back from hot mode.
+    
+    // @param productId the product ID
+    // @return product information
+    
+    @DeleteMapping("/{productId}/hot")
+    public ResponseEntity<ProductResponse> disableHotMode(@PathVariable Long productId) {
+        inventoryService.disableHotMode(productId);
+        return ResponseEntity.ok(toResponse(inventoryService.getProduct(productId)));
+    }
+
+    
+    // Get reservation statistics. A growing expired count means checkouts are being abandoned
+    // between locking and paying.
+    
+    // @return active and expired reservation counts
+    
+    @GetMapping("/reservations/stats")
+    public ResponseEntity<ReservationStatsResponse> getReservationStats() {
+        ReservationStatsResponse response = new ReservationStatsResponse(
+                reservationLedger.getActiveCount(),
+                reservationLedger.getExpiredCount()
+        );
+        return ResponseEntity.ok(response);
+    }
+
+    
+    // Get product cache statistics, for sizing the cache. Many evictions with a low hit ratio
+    // mean inventory.product-cache.max-size is too small for the working set.
+    
+    // @return cache size and hit, miss, eviction, expiration and invalidation counts
+    
+    @GetMapping("/cache/stats")
+    public ResponseEntity<CacheStatsResponse> getCacheStats() {
+        CacheStatsResponse response = new CacheStatsResponse(
+                productCache.size(),
+                productCache.getHitCount(),
+                productCache.getMissCount(),
+                productCache.getEvictionCount(),
+                productCache.getExpirationCount(),
+                productCache.getInvalidationCount()
+        );
+        return ResponseEntity.ok(response);
+    }
+
+    private ProductResponse toResponse(Product product) {
+        return new ProductResponse(
                 product.getId(),
                 product.getName(),
                 product.getPrice(),
-                product.getStockQuantity()
+                product.getStockQuantity(),
+                inventoryService.getAvailableStock(product)
         );
-        return ResponseEntity.ok(response);
     }
 
     
     // DTO for product response.
+    // stockQuantity is on-hand stock; availableQuantity excludes stock reserved by in-flight orders.
     
     public static class ProductResponse {
         private Long productId;
         private String productName;
-        private java.math.BigDecimal price;
+        private Money price;
         private Integer stockQuantity;
+        private Integer availableQuantity;
 
         public ProductResponse(Long productId, String productName,
-                               java.math.BigDecimal price, Integer stockQuantity) {
+                               Money price, Integer stockQuantity, Integer availableQuantity) {
             this.productId = productId;
             this.productName = productName;
             this.price = price;
             this.stockQuantity = stockQuantity;
+            this.availableQuantity = availableQuantity;
         }
 
         // Getters
         public Long getProductId() { return productId; }
         public String getProductName() { return productName; }
-        public java.math.BigDecimal getPrice() { return price; }
+        public Money getPrice() { return price; }
         public Integer getStockQuantity() { return stockQuantity; }
+        public Integer getAvailableQuantity() { return availableQuantity; }
+    }
+
+    
+    // DTO for reservation statistics.
+    
+    public static class ReservationStatsResponse {
+        private int activeReservations;
+        private long expiredReservations;
+
+        public ReservationStatsResponse(int activeReservations, long expiredReservations) {
+            this.activeReservations = activeReservations;
+            this.expiredReservations = expiredReservations;
+        }
+
+        // Getters
+        public int getActiveReservations() { return activeReservations; }
+        public long getExpiredReservations() { return expiredReservations; }
+    }
+
+    
+    // DTO for product cache statistics.
+    
+    public static class CacheStatsResponse {
+        private int size;
+        private long hits;
+        private long misses;
+        private long evictions;
+        private long expirations;
+        private long invalidations;
+
+        public CacheStatsResponse(int size, long hits, long misses, long evictions,
+                                  long expirations, long invalidations) {
+            this.size = size;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.expirations = expirations;
+            this.invalidations = invalidations;
+        }
+
+        // Getters
+        public int getSize() { return size; }
+        public long getHits() { return hits; }
+        public long getMisses() { return misses; }
+        public long getEvictions() { return evictions; }
+        public long getExpirations() { return expirations; }
+        public long getInvalidations() { return invalidations; }
+        public double getHitRatio() { return hits + misses == 0 ? 0 : (double) hits / (hits + misses); }
     }
-}
+}
\ No newline at end of file
@@ -1,13 +1,30 @@
 package com.ecommerce.controller;
 
+import com.ecommerce.dto.BatchOrderResponse;
+import com.ecommerce.dto.OrderPage;
 import com.ecommerce.dto.OrderRequest;
 import com.ecommerce.dto.OrderResponse;
+import com.ecommerce.service.BatchOrderService;
+import com.ecommerce.service.IdempotencyService;
+import com.ecommerce.service.OrderExportService;
+import com.ecommerce.service.OrderResponseCache;
 import com.ecommerce.service.OrderService;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import java.io.IOException;
+import java.net.URI;
+import java.time.LocalDate;
+import java.util.List;
 
 
 // REST controller for order management operations.
@@ -16,34 +33,137 @@ import org.springframework.web.bind.annotation.*;
 @RequestMapping("/orders")
 public class OrderController {
 
+    // Upper bound on orders per batch submission, so one request cannot hold unbounded stock
+    private static final int MAX_BATCH_ORDERS = 500;
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final OrderService orderService;
+    private final BatchOrderService batchOrderService;
+    private final IdempotencyService idempotencyService;
+    private final OrderResponseCache orderResponseCache;
+    private final OrderExportService orderExportService;
+    private final boolean async;
 
     @Autowired
-    public OrderController(OrderService orderService) {
+    public OrderController(OrderService orderService, BatchOrderService batchOrderService,
+                           IdempotencyService idempotencyService, OrderResponseCache orderResponseCache,
+                           OrderExportService orderExportService,
+                           @Value("${orders.async.enabled:false}") boolean async) {
         this.orderService = orderService;
+        this.batchOrderService = batchOrderService;
+        this.idempotencyService = idempotencyService;
+        this.orderResponseCache = orderResponseCache;
+        this.orderExportService = orderExportService;
+        this.async = async;
     }
 
     
-    // Create a new order.
+    // Create a new order. With orders.async.enabled the order is accepted as PENDING once its
+    // stock is reserved, and payment runs in the background; poll the Location for the outcome.
+    // With an Idempotency-Key header, a retry of the same request gets the first response back
+    // instead of placing the order again.
     
     // @param orderRequest the order request
-    // @return created order response
+    // @param idempotencyKey optional client-chosen key identifying this order attempt
+    // @return created order response, or 202 Accepted with the pending order in async mode
     
     @PostMapping
-    public ResponseEntity<OrderResponse> createOrder(@Valid @RequestBody OrderRequest orderRequest) {
+    public ResponseEntity<?> createOrder(@Valid @RequestBody OrderRequest orderRequest,
+                                         @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey) {
+        if (idempotencyKey != null) {
+            return idempotencyService.execute(idempotencyKey, orderRequest, () -> placeOrder(orderRequest));
+        }
+        return placeOrder(orderRequest);
+    }
+
+    private ResponseEntity<OrderResponse> placeOrder(OrderRequest orderRequest) {
+        if (async) {
+            OrderResponse pending = orderService.submitOrder(orderRequest);
+            return ResponseEntity.accepted().location(URI.create("/orders/" + pending.getId())).body(pending);
+        }
         OrderResponse orderResponse = orderService.createOrder(orderRequest);
         return ResponseEntity.status(HttpStatus.CREATED).body(orderResponse);
     }
 
     
-    // Get order by ID.
+    // Create many orders in one call. Each order is validated, reserved, paid and saved on its
+    // own account; one failing order does not fail the others.
+    
+    // @param orderRequests the orders, at most 500
+    // @return one result per order, in submission order
+    
+    @PostMapping("/batch")
+    public ResponseEntity<BatchOrderResponse> createOrders(@RequestBody List<OrderRequest> orderRequests) {
+        if (orderRequests.isEmpty() || orderRequests.size() > MAX_BATCH_ORDERS) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(batchOrderService.createOrders(orderRequests));
+    }
+
+    
+    // List a customer's orders, newest first, a page at a time. Archived orders are not
+    // listed; they can only be fetched by ID.
+    
+    // @param customerEmail the customer's email
+    // @param cursor nextCursor of the previous page; leave out for the first page
+    // @param limit orders per page, 1 to 100
+    // @return the page and the cursor of the next one
+    
+    @GetMapping
+    public ResponseEntity<OrderPage> getCustomerOrders(@RequestParam String customerEmail,
+                                                       @RequestParam(required = false) String cursor,
+                                                       @RequestParam(defaultValue = "20") int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(orderService.getCustomerOrders(customerEmail, cursor, limit));
+    }
+
+    
+    // Export the orders placed from one day to another, both inclusive, as NDJSON: one order
+    // per line, oldest first. The orders are streamed from the database straight into the
+    // response, so an export of any size runs in constant memory. Archived orders are not
+    // exported.
+    
+    // @param from first day, e.g. 2024-01-15
+    // @param to last day
+    // @param response the response the export is written to
+    
+    @GetMapping("/export")
+    public void exportOrders(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                             HttpServletResponse response) throws IOException {
+        if (to.isBefore(from)) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+        response.setContentType("application/x-ndjson");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename("orders-" + from + "-" + to + ".ndjson").build().toString());
+        orderExportService.exportNdjson(from.atStartOfDay(), to.plusDays(1).atStartOfDay(), response.getOutputStream());
+    }
+
+    
+    // Get order by ID. A completed or cancelled order is final: it is served from
+    // OrderResponseCache without a database read, with an ETag, and a conditional request
+    // (If-None-Match) that still matches gets 304.
     
     // @param orderId the order ID
     // @return order response
     
     @GetMapping("/{orderId}")
-    public ResponseEntity<OrderResponse> getOrder(@PathVariable Long orderId) {
-        OrderResponse orderResponse = orderService.getOrder(orderId);
-        return ResponseEntity.ok(orderResponse);
+    public ResponseEntity<byte[]> getOrder(@PathVariable Long orderId) {
+        OrderResponseCache.CachedOrder cached = orderResponseCache.get(orderId);
+        if (cached == null) {
+            cached = orderResponseCache.put(orderService.getOrder(orderId));
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON);
+        if (cached.isCacheable()) {
+            // Clients may keep it, but must revalidate, which costs them a 304 at most
+            response.eTag(cached.getEtag())
+                    .cacheControl(CacheControl.noCache().cachePrivate());
+        }
+        return response.body(cached.getBody());
     }
 }
@@ -0,0 +1,19 @@
+package com.ecommerce.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.List;
+
+// DTO for batch order submission results, one result per submitted order in submission order.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchOrderResponse {
+
+    private int created;
+    private int failed;
+    private List<BatchOrderResult> results;
+
+}
@@ -0,0 +1,23 @@
+package com.ecommerce.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// DTO for the outcome of one order of a batch submission.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchOrderResult {
+
+    private int index; // position of the order in the submitted list
+    private Status status;
+    private OrderResponse order; // null unless CREATED
+    private String error; // null if CREATED
+
+    public enum Status {
+        CREATED, INVALID, PRODUCT_NOT_FOUND, OUT_OF_STOCK, PAYMENT_FAILED, FAILED
+    }
+
+}
@@ -0,0 +1,19 @@
+package com.ecommerce.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// DTO for catalog import results.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ImportResponse {
+
+    private long rows;
+    private int chunks;
+    private long elapsedMillis;
+    private long rowsPerSecond;
+
+}
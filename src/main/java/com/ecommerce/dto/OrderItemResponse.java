@@ -1,7 +1,7 @@
 package com.ecommerce.dto;
 
 
-import java.math.BigDecimal;
+import com.ecommerce.model.Money;
 import com.ecommerce.model.OrderItem;
 
 import lombok.AllArgsConstructor;
@@ -19,8 +19,8 @@ public class OrderItemResponse {
     private Long productId;
     private String productName;
     private Integer quantity;
-    private BigDecimal price;
-    private BigDecimal subtotal;
+    private Money price;
+    private Money subtotal;
     
     // Constructors
     
@@ -0,0 +1,30 @@
+package com.ecommerce.dto;
+
+import com.ecommerce.model.Money;
+import com.ecommerce.model.Order;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+// One row of the order read projection: an order's columns next to one of its items.
+// The item fields are null for an order without items.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class OrderLine {
+
+    private Long orderId;
+    private String customerName;
+    private String customerEmail;
+    private Money totalAmount;
+    private Order.OrderStatus status;
+    private LocalDateTime orderDate;
+    private Long itemId;
+    private Long productId;
+    private String productName;
+    private Integer quantity;
+    private Money price;
+    private Money subtotal;
+}
@@ -0,0 +1,18 @@
+package com.ecommerce.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.List;
+
+// DTO for one page of a customer's order history.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class OrderPage {
+
+    private List<OrderResponse> orders;
+    // Pass as cursor to get the next page; null on the last page
+    private String nextCursor;
+}
@@ -3,10 +3,13 @@ package com.ecommerce.dto;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import com.ecommerce.model.Money;
 import com.ecommerce.model.Order;
 
 // DTO for order responses.
@@ -19,7 +22,7 @@ public class OrderResponse {
     private Long id;
     private String customerName;
     private String customerEmail;
-    private BigDecimal totalAmount;
+    private Money totalAmount;
     private String status;
     private LocalDateTime orderDate;
     private List<OrderItemResponse> items;
@@ -37,4 +40,34 @@ public class OrderResponse {
                 .map(OrderItemResponse::new)
                 .collect(Collectors.toList());
     }
+
+    // Assemble responses from projection rows sorted by order ID, one response per order.
+    public static List<OrderResponse> fromLines(List<OrderLine> lines) {
+        List<OrderResponse> responses = new ArrayList<>();
+        fromLines(lines.iterator(), responses::add);
+        return responses;
+    }
+
+    // Streaming form of the above: each order is handed on as soon as its last row has been
+    // read, so only one order is held at a time. An order's rows must be consecutive.
+    public static void fromLines(Iterator<OrderLine> lines, Consumer<OrderResponse> consumer) {
+        OrderResponse current = null;
+        while (lines.hasNext()) {
+            OrderLine line = lines.next();
+            if (current == null || !current.getId().equals(line.getOrderId())) {
+                if (current != null) {
+                    consumer.accept(current);
+                }
+                current = new OrderResponse(line.getOrderId(), line.getCustomerName(), line.getCustomerEmail(),
+                        line.getTotalAmount(), line.getStatus().name(), line.getOrderDate(), new ArrayList<>());
+            }
+            if (line.getItemId() != null) {
+                current.getItems().add(new OrderItemResponse(line.getItemId(), line.getProductId(),
+                        line.getProductName(), line.getQuantity(), line.getPrice(), line.getSubtotal()));
+            }
+        }
+        if (current != null) {
+            consumer.accept(current);
+        }
+    }
 }    
\ No newline at end of file
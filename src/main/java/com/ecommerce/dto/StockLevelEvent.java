@@ -0,0 +1,18 @@
+package com.ecommerce.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// DTO for stock level change events pushed to stream subscribers.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class StockLevelEvent {
+
+    private Long productId;
+    private Integer stockQuantity;
+    private Integer availableQuantity;
+
+}
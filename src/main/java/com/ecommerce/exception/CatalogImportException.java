@@ -0,0 +1,19 @@
+package com.ecommerce.exception;
+
+// Exception thrown when a catalog import hits a row it cannot read.
+// Chunks before the bad row are already committed; importedRows says how many rows that was.
+
+public class CatalogImportException extends RuntimeException {
+
+    private final long importedRows;
+
+    public CatalogImportException(long line, long importedRows, String reason) {
+        super(String.format("Import failed at line %d: %s. Rows imported before the failure: %d",
+                line, reason, importedRows));
+        this.importedRows = importedRows;
+    }
+
+    public long getImportedRows() {
+        return importedRows;
+    }
+}
@@ -0,0 +1,10 @@
+package com.ecommerce.exception;
+
+// Exception thrown when an Idempotency-Key cannot be used, e.g. it was already used for a different request.
+
+public class IdempotencyKeyException extends RuntimeException {
+
+    public IdempotencyKeyException(String message) {
+        super(message);
+    }
+}
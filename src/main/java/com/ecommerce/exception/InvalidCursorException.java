@@ -0,0 +1,10 @@
+package com.ecommerce.exception;
+
+// Exception thrown when a pagination cursor was not issued by this service or is damaged.
+
+public class InvalidCursorException extends RuntimeException {
+
+    public InvalidCursorException(String cursor) {
+        super("Invalid cursor: " + cursor);
+    }
+}
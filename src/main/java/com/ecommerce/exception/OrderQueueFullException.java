@@ -0,0 +1,10 @@
+package com.ecommerce.exception;
+
+// Exception thrown when the asynchronous order pipeline has no room for another order.
+
+public class OrderQueueFullException extends RuntimeException {
+
+    public OrderQueueFullException() {
+        super("Too many orders in progress, please retry shortly");
+    }
+}
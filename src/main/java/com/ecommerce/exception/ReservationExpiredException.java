@@ -0,0 +1,14 @@
+package com.ecommerce.exception;
+
+// Exception thrown when a stock reservation expired before the order could use it.
+
+public class ReservationExpiredException extends RuntimeException {
+
+    public ReservationExpiredException(String message) {
+        super(message);
+    }
+
+    public ReservationExpiredException(long reservationId) {
+        super("Stock reservation expired: " + reservationId);
+    }
+}
@@ -0,0 +1,51 @@
+package com.ecommerce.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.springframework.data.domain.Persistable;
+import java.time.LocalDateTime;
+
+// A completed or cancelled order moved out of the orders and order_items tables once it got old.
+// The order is kept as it is served, a gzip-compressed OrderResponse document, under its own ID.
+
+@Entity
+@Table(name = "archived_orders")
+@Data
+@NoArgsConstructor
+public class ArchivedOrder implements Persistable<Long> {
+
+    @Id
+    private Long id;
+
+    @Column(nullable = false)
+    private LocalDateTime archivedAt;
+
+    @Lob
+    @Column(nullable = false)
+    private byte[] document;
+
+    // The ID is assigned, so tell Spring Data to insert instead of looking the row up first
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private boolean stored;
+
+    public ArchivedOrder(Long id, LocalDateTime archivedAt, byte[] document) {
+        this.id = id;
+        this.archivedAt = archivedAt;
+        this.document = document;
+    }
+
+    @Override
+    public boolean isNew() {
+        return !stored;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markStored() {
+        stored = true;
+    }
+}
@@ -0,0 +1,90 @@
+package com.ecommerce.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import java.math.BigDecimal;
+
+// An amount of money with two decimal places, held as a long number of cents.
+//
+// Prices, subtotals and totals are added up and multiplied by quantities on every order; with
+// plain long arithmetic that costs no BigDecimal intermediates, and an overflow throws
+// ArithmeticException instead of wrapping. BigDecimal only appears at the edges: columns are
+// DECIMAL(10, 2) through MoneyConverter, and JSON carries the amount as a decimal number
+// (59.99). Converting from a BigDecimal is exact: an amount with fractions of a cent is
+// rejected rather than rounded.
+
+public final class Money implements Comparable<Money> {
+
+    public static final int SCALE = 2;
+    public static final Money ZERO = new Money(0);
+
+    private final long cents;
+
+    private Money(long cents) {
+        this.cents = cents;
+    }
+
+    public static Money ofCents(long cents) {
+        return cents == 0 ? ZERO : new Money(cents);
+    }
+
+
+    // Convert a decimal amount exactly.
+
+    // @param amount the amount, with at most two decimal places
+    // @return the amount as Money
+    // @throws ArithmeticException if the amount has fractions of a cent or is out of range
+
+    @JsonCreator(mode = JsonCreator.Mode.DELEGATING)
+    public static Money of(BigDecimal amount) {
+        return ofCents(amount.movePointRight(SCALE).longValueExact());
+    }
+
+    // Parse a decimal amount such as "59.99"; see of(BigDecimal).
+    public static Money of(String amount) {
+        return of(new BigDecimal(amount));
+    }
+
+    public long getCents() {
+        return cents;
+    }
+
+    // @throws ArithmeticException on overflow
+    public Money plus(Money other) {
+        return ofCents(Math.addExact(cents, other.cents));
+    }
+
+    // @throws ArithmeticException on overflow
+    public Money times(int quantity) {
+        return ofCents(Math.multiplyExact(cents, quantity));
+    }
+
+    public boolean isNegative() {
+        return cents < 0;
+    }
+
+    @JsonValue
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(cents, SCALE);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(cents, other.cents);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Money money && money.cents == cents;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(cents);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
@@ -1,6 +1,5 @@
 package com.ecommerce.model;
 
-import java.math.BigDecimal;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -14,14 +13,15 @@ import lombok.*;
 public class Product {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "products_seq")
+    @SequenceGenerator(name = "products_seq", sequenceName = "products_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
     private String name;
 
-    @Column(nullable = false, precision = 10)
-    private BigDecimal price;
+    @Column(nullable = false, precision = 10, scale = 2)
+    private Money price;
 
     @Column(nullable = false)
     private Integer stockQuantity;
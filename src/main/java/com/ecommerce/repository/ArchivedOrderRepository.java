@@ -0,0 +1,11 @@
+package com.ecommerce.repository;
+
+import com.ecommerce.model.ArchivedOrder;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+// Repository interface for archived orders.
+
+@Repository
+public interface ArchivedOrderRepository extends JpaRepository<ArchivedOrder, Long> {
+}
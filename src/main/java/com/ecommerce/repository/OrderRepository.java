@@ -1,11 +1,72 @@
 package com.ecommerce.repository;
 
+import com.ecommerce.dto.OrderLine;
 import com.ecommerce.model.Order;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
 
 // Repository interface for Order entity data access.
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
-}
\ No newline at end of file
+
+    // Read-only view of orders and their items in one query, without managed entities:
+    // one row per item (one row with null item fields for an order without items), by order and item ID.
+    @Query("SELECT new com.ecommerce.dto.OrderLine(o.id, o.customerName, o.customerEmail, o.totalAmount, " +
+           "o.status, o.orderDate, i.id, i.productId, i.productName, i.quantity, i.price, i.subtotal) " +
+           "FROM Order o LEFT JOIN o.items i WHERE o.id IN :ids ORDER BY o.id, i.id")
+    List<OrderLine> findLinesByOrderIdIn(@Param("ids") Collection<Long> ids);
+
+    // First page of a customer's order IDs, newest first. Pass PageRequest.ofSize(n); the page
+    // is read off the (customer_email, order_date, id) index without counting or skipping rows.
+    @Query("SELECT o.id FROM Order o WHERE o.customerEmail = :email ORDER BY o.orderDate DESC, o.id DESC")
+    List<Long> findHistoryIds(@Param("email") String email, Pageable page);
+
+    // Next page of a customer's order IDs: the orders after (older than) the given one, found by
+    // seeking in the index, so a deep page costs the same as the first.
+    @Query("SELECT o.id FROM Order o WHERE o.customerEmail = :email " +
+           "AND (o.orderDate < :orderDate OR (o.orderDate = :orderDate AND o.id < :id)) " +
+           "ORDER BY o.orderDate DESC, o.id DESC")
+    List<Long> findHistoryIdsAfter(@Param("email") String email, @Param("orderDate") LocalDateTime orderDate,
+                                   @Param("id") Long id, Pageable page);
+
+    // Orders placed in [from, to) with their items, as OrderLine rows read forward-only off the
+    // (order_date, id) index: rows are fetched 1000 at a time as the stream is consumed, and since
+    // they are not entities the persistence context stays empty. Consume inside a transaction and close.
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT new com.ecommerce.dto.OrderLine(o.id, o.customerName, o.customerEmail, o.totalAmount, " +
+           "o.status, o.orderDate, i.id, i.productId, i.productName, i.quantity, i.price, i.subtotal) " +
+           "FROM Order o LEFT JOIN o.items i WHERE o.orderDate >= :from AND o.orderDate < :to " +
+           "ORDER BY o.orderDate, o.id, i.id")
+    Stream<OrderLine> streamLinesByOrderDate(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    // IDs of orders in the given statuses placed before the cutoff, oldest first; pass
+    // PageRequest.ofSize(n) for a chunk. Read off the (order_date, id) index.
+    @Query("SELECT o.id FROM Order o WHERE o.orderDate < :before AND o.status IN :statuses ORDER BY o.orderDate, o.id")
+    List<Long> findIdsPlacedBefore(@Param("before") LocalDateTime before,
+                                   @Param("statuses") Collection<Order.OrderStatus> statuses, Pageable page);
+
+    // Delete orders with their items in two statements, without loading them; call the item
+    // delete first. Returns the number of rows deleted. Caller supplies the transaction.
+    @Modifying
+    @Query("DELETE FROM OrderItem i WHERE i.order.id IN :ids")
+    int deleteItemsByOrderIdIn(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("DELETE FROM Order o WHERE o.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+}
@@ -0,0 +1,58 @@
+package com.ecommerce.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Lock-free reserved counts: one atomic counter per product, so reservations for different
+// products never contend, and reservations for the same product are linearized by a
+// compare-and-set loop.
+
+final class AtomicReservedStock implements ReservedStock {
+
+    // Counters are never removed: a thread may still hold a reference to a counter it
+    // looked up, and removing it would silently drop that thread's update.
+    private final ConcurrentHashMap<Long, AtomicInteger> counters = new ConcurrentHashMap<>();
+
+    @Override
+    public int reserve(Long productId, int quantity, int stockQuantity) {
+        AtomicInteger counter = counter(productId);
+        while (true) {
+            int current = counter.get();
+            int available = stockQuantity - current;
+            if (available < quantity) {
+                return available;
+            }
+            if (counter.compareAndSet(current, current + quantity)) {
+                return available;
+            }
+        }
+    }
+
+    @Override
+    public int reserveRemaining(Long productId, int stockQuantity) {
+        AtomicInteger counter = counter(productId);
+        while (true) {
+            int current = counter.get();
+            int remaining = Math.max(0, stockQuantity - current);
+            if (counter.compareAndSet(current, current + remaining)) {
+                return remaining;
+            }
+        }
+    }
+
+    @Override
+    public void add(Long productId, int delta) {
+        counter(productId).addAndGet(delta);
+    }
+
+    @Override
+    public int get(Long productId) {
+        AtomicInteger counter = counters.get(productId);
+        return counter == null ? 0 : counter.get();
+    }
+
+    private AtomicInteger counter(Long productId) {
+        AtomicInteger counter = counters.get(productId);
+        return counter != null ? counter : counters.computeIfAbsent(productId, id -> new AtomicInteger());
+    }
+}
@@ -0,0 +1,257 @@
+package com.ecommerce.service;
+
+import com.ecommerce.dto.BatchOrderResponse;
+import com.ecommerce.dto.BatchOrderResult;
+import com.ecommerce.dto.OrderItemRequest;
+import com.ecommerce.dto.OrderRequest;
+import com.ecommerce.dto.OrderResponse;
+import com.ecommerce.exception.OutOfStockException;
+import com.ecommerce.exception.PaymentFailedException;
+import com.ecommerce.exception.ProductNotFoundException;
+import com.ecommerce.model.Order;
+import com.ecommerce.model.Product;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.stereotype.Service;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+// Places many orders in one call, for integrations that submit orders in bursts.
+//
+// The work is shared across the batch: the products of every order are loaded together, each
+// order's stock is reserved against that one snapshot, payments run concurrently on a small
+// pool, and all paid orders are saved and their stock deducted in one transaction, with one
+// guarded UPDATE per product. Each order still succeeds or fails on its own: the paid orders are
+// saved through OrderGroupSaver, which retries them one transaction each if the shared
+// transaction fails, so one bad order only costs itself, refunded and released. Like single
+// orders, no transaction is open during the payments.
+
+@Service
+public class BatchOrderService {
+
+    private final InventoryService inventoryService;
+    private final PaymentService paymentService;
+    private final OrderGroupSaver orderGroupSaver;
+    private final Validator validator;
+    private final int paymentConcurrency;
+    private final boolean virtualThreads;
+    private Executor paymentExecutor;
+
+    @Autowired
+    public BatchOrderService(InventoryService inventoryService, PaymentService paymentService,
+                             OrderGroupSaver orderGroupSaver, Validator validator,
+                             @Value("${orders.batch.payment-concurrency:32}") int paymentConcurrency,
+                             @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.inventoryService = inventoryService;
+        this.paymentService = paymentService;
+        this.orderGroupSaver = orderGroupSaver;
+        this.validator = validator;
+        this.paymentConcurrency = paymentConcurrency;
+        this.virtualThreads = virtualThreads;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (virtualThreads) {
+            paymentExecutor = new VirtualThreadTaskExecutor("batch-payment-");
+            return;
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        paymentExecutor = Executors.newFixedThreadPool(paymentConcurrency, runnable -> {
+            Thread thread = new Thread(runnable, "batch-payment-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (paymentExecutor instanceof ExecutorService pool) {
+            pool.shutdown();
+        }
+    }
+
+
+    // Place a batch of orders. An order that cannot be placed is reported in its result and
+    // does not affect the others.
+
+    // @param orderRequests the orders, in any order
+    // @return one result per order, in submission order
+
+    public BatchOrderResponse createOrders(List<OrderRequest> orderRequests) {
+        List<PendingOrder> pending = new ArrayList<>(orderRequests.size());
+        BatchOrderResult[] results = new BatchOrderResult[orderRequests.size()];
+
+        // Step 1: Load the products of every valid order with one query
+        Set<Long> productIds = new HashSet<>();
+        for (int i = 0; i < orderRequests.size(); i++) {
+            OrderRequest orderRequest = orderRequests.get(i);
+            String problem = validate(orderRequest);
+            if (problem != null) {
+                results[i] = failure(i, BatchOrderResult.Status.INVALID, problem);
+                continue;
+            }
+            pending.add(new PendingOrder(i, orderRequest));
+            for (OrderItemRequest item : orderRequest.getItems()) {
+                productIds.add(item.getProductId());
+            }
+        }
+        Map<Long, Product> products = productIds.isEmpty() ? Map.of() : inventoryService.findProducts(productIds);
+
+        // Step 2: Reserve each order's stock against the shared products
+        List<PendingOrder> reserved = new ArrayList<>(pending.size());
+        for (PendingOrder pendingOrder : pending) {
+            try {
+                pendingOrder.reservation = inventoryService.reserveAll(pendingOrder.request.getItems(),
+                        pendingOrder.request.getCustomerEmail(), products);
+                pendingOrder.order = OrderService.buildOrder(pendingOrder.request, pendingOrder.reservation);
+                reserved.add(pendingOrder);
+            } catch (RuntimeException e) {
+                results[pendingOrder.index] = failure(pendingOrder.index, e);
+            }
+        }
+
+        // Step 3: Take the payments concurrently, outside any transaction
+        List<CompletableFuture<String>> payments = new ArrayList<>(reserved.size());
+        for (PendingOrder pendingOrder : reserved) {
+            payments.add(CompletableFuture.supplyAsync(() -> paymentService.processPayment(
+                    pendingOrder.order.getTotalAmount(), pendingOrder.order.getCustomerEmail()), paymentExecutor));
+        }
+        List<PendingOrder> paid = new ArrayList<>(reserved.size());
+        for (int i = 0; i < reserved.size(); i++) {
+            PendingOrder pendingOrder = reserved.get(i);
+            try {
+                pendingOrder.transactionId = payments.get(i).join();
+                paid.add(pendingOrder);
+            } catch (CompletionException e) {
+                releaseQuietly(pendingOrder.reservation);
+                results[pendingOrder.index] = failure(pendingOrder.index, unwrap(e));
+            }
+        }
+
+        // Step 4: Save the paid orders and deduct their stock, together if possible
+        if (!paid.isEmpty()) {
+            saveAll(paid, results);
+        }
+
+        int created = 0;
+        for (BatchOrderResult result : results) {
+            if (result.getStatus() == BatchOrderResult.Status.CREATED) {
+                created++;
+            }
+        }
+        return new BatchOrderResponse(created, results.length - created, List.of(results));
+    }
+
+    private void saveAll(List<PendingOrder> paid, BatchOrderResult[] results) {
+        List<Order> orders = new ArrayList<>(paid.size());
+        List<ReservationBatch> reservations = new ArrayList<>(paid.size());
+        for (PendingOrder pendingOrder : paid) {
+            pendingOrder.order.setStatus(Order.OrderStatus.COMPLETED);
+            orders.add(pendingOrder.order);
+            reservations.add(pendingOrder.reservation);
+        }
+        List<OrderGroupSaver.SaveResult> saved = orderGroupSaver.saveAll(orders, reservations);
+        for (int i = 0; i < paid.size(); i++) {
+            PendingOrder pendingOrder = paid.get(i);
+            OrderGroupSaver.SaveResult result = saved.get(i);
+            if (result.isSaved()) {
+                results[pendingOrder.index] = created(pendingOrder);
+            } else {
+                // Paid but not saved: compensate
+                refundQuietly(pendingOrder);
+                releaseQuietly(pendingOrder.reservation);
+                results[pendingOrder.index] = failure(pendingOrder.index, result.getFailure());
+            }
+        }
+    }
+
+    private String validate(OrderRequest orderRequest) {
+        if (orderRequest == null) {
+            return "Order is empty";
+        }
+        Set<ConstraintViolation<OrderRequest>> violations = validator.validate(orderRequest);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        List<String> messages = new ArrayList<>();
+        for (ConstraintViolation<OrderRequest> violation : violations) {
+            messages.add(violation.getPropertyPath() + ": " + violation.getMessage());
+        }
+        Collections.sort(messages);
+        return String.join("; ", messages);
+    }
+
+    private void releaseQuietly(ReservationBatch reservation) {
+        try {
+            inventoryService.releaseLock(reservation);
+        } catch (Exception releaseException) {
+            // Log but don't throw - the reservation still expires on its own
+            System.err.println("Error releasing locked stock for " + reservation.getOwner() + ": " + releaseException.getMessage());
+        }
+    }
+
+    private void refundQuietly(PendingOrder pendingOrder) {
+        try {
+            paymentService.refundPayment(pendingOrder.transactionId, pendingOrder.order.getTotalAmount(), pendingOrder.order.getCustomerEmail());
+        } catch (Exception refundException) {
+            // Log but don't throw - the refund has to be settled by hand
+            System.err.println("Error refunding " + pendingOrder.transactionId + " for " + pendingOrder.order.getCustomerEmail() + ": " + refundException.getMessage());
+        }
+    }
+
+    private static BatchOrderResult created(PendingOrder pendingOrder) {
+        return new BatchOrderResult(pendingOrder.index, BatchOrderResult.Status.CREATED, new OrderResponse(pendingOrder.order), null);
+    }
+
+    private static BatchOrderResult failure(int index, Throwable e) {
+        BatchOrderResult.Status status;
+        if (e instanceof OutOfStockException) {
+            status = BatchOrderResult.Status.OUT_OF_STOCK;
+        } else if (e instanceof PaymentFailedException) {
+            status = BatchOrderResult.Status.PAYMENT_FAILED;
+        } else if (e instanceof ProductNotFoundException) {
+            status = BatchOrderResult.Status.PRODUCT_NOT_FOUND;
+        } else {
+            status = BatchOrderResult.Status.FAILED;
+        }
+        return failure(index, status, e.getMessage());
+    }
+
+    private static BatchOrderResult failure(int index, BatchOrderResult.Status status, String error) {
+        return new BatchOrderResult(index, status, null, error);
+    }
+
+    private static Throwable unwrap(CompletionException e) {
+        return e.getCause() != null ? e.getCause() : e;
+    }
+
+    private static final class PendingOrder {
+        final int index;
+        final OrderRequest request;
+        ReservationBatch reservation;
+        Order order;
+        String transactionId;
+
+        PendingOrder(int index, OrderRequest request) {
+            this.index = index;
+            this.request = request;
+        }
+    }
+}
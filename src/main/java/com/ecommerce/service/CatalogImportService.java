@@ -0,0 +1,328 @@
+package com.ecommerce.service;
+
+import com.ecommerce.dto.ImportResponse;
+import com.ecommerce.exception.CatalogImportException;
+import com.ecommerce.model.Money;
+import com.ecommerce.model.Product;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+// Bulk product import and restock.
+//
+// The input is read line by line and never held in memory as a whole. Rows are upserted with
+// JDBC batch statements, one transaction per chunk of inventory.import.chunk-size rows, so a
+// large import neither builds a giant transaction nor goes through the persistence context.
+// Rows with an id update that product (or create it under that id); rows without one are
+// inserted as new products. stockQuantity is the new on-hand stock, not a delta.
+
+@Service
+public class CatalogImportService {
+
+    // H2 upsert; a row with an explicit id replaces the product with that id
+    private static final String UPSERT_SQL =
+            "MERGE INTO products (id, name, price, stock_quantity) KEY (id) VALUES (?, ?, ?, ?)";
+    private static final String INSERT_SQL =
+            "INSERT INTO products (id, name, price, stock_quantity) VALUES (?, ?, ?, ?)";
+    // Product IDs come from products_seq in blocks of ID_BLOCK, the first ID of a block being the
+    // sequence value (Hibernate's pooled-lo optimizer), so imported and saved products never collide
+    private static final int ID_BLOCK = 50;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final InventoryService inventoryService;
+    private final ProductCache productCache;
+    private final ObjectReader productReader;
+    private final int chunkSize;
+
+    @Autowired
+    public CatalogImportService(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                InventoryService inventoryService, ProductCache productCache,
+                                ObjectMapper objectMapper,
+                                @Value("${inventory.import.chunk-size:1000}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.inventoryService = inventoryService;
+        this.productCache = productCache;
+        this.productReader = objectMapper.readerFor(Product.class);
+        this.chunkSize = chunkSize;
+    }
+
+
+    // Import products from CSV. The first line is a header naming the columns
+    // id, name, price and stockQuantity in any order; id may be left out or empty.
+    // Quoted fields may contain commas and doubled quotes, but not line breaks.
+
+    // @param input the CSV content
+    // @return import statistics
+    // @throws CatalogImportException at the first row that cannot be read
+
+    public ImportResponse importCsv(InputStream input) {
+        Chunker chunker = new Chunker();
+        try (BufferedReader reader = newReader(input)) {
+            String header = reader.readLine();
+            if (header == null) {
+                return chunker.result();
+            }
+            chunker.line = 1;
+            List<String> columns = splitCsvLine(header.replace("\uFEFF", ""));
+            int idColumn = columnIndex(columns, "id");
+            int nameColumn = requireColumn(columns, "name");
+            int priceColumn = requireColumn(columns, "price");
+            int stockColumn = requireColumn(columns, "stockquantity");
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                chunker.line++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                List<String> fields = splitCsvLine(line);
+                try {
+                    String id = idColumn >= 0 && idColumn < fields.size() ? fields.get(idColumn).trim() : "";
+                    chunker.add(new Product(
+                            id.isEmpty() ? null : Long.valueOf(id),
+                            field(fields, nameColumn),
+                            Money.of(field(fields, priceColumn).trim()),
+                            Integer.valueOf(field(fields, stockColumn).trim())));
+                } catch (NumberFormatException e) {
+                    throw chunker.failure("not a number (" + e.getMessage() + ")");
+                } catch (ArithmeticException e) {
+                    throw chunker.failure("price must be in whole cents");
+                }
+            }
+            chunker.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read import", e);
+        } finally {
+            chunker.close();
+        }
+        return chunker.result();
+    }
+
+
+    // Import products from newline-delimited JSON, one object per line with the fields
+    // id (optional), name, price and stockQuantity.
+
+    // @param input the NDJSON content
+    // @return import statistics
+    // @throws CatalogImportException at the first row that cannot be read
+
+    public ImportResponse importNdjson(InputStream input) {
+        Chunker chunker = new Chunker();
+        try (BufferedReader reader = newReader(input)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                chunker.line++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    chunker.add(productReader.readValue(line));
+                } catch (JsonProcessingException e) {
+                    throw chunker.failure("invalid JSON (" + e.getOriginalMessage() + ")");
+                }
+            }
+            chunker.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read import", e);
+        } finally {
+            chunker.close();
+        }
+        return chunker.result();
+    }
+
+    // Collects rows and writes them a chunk at a time. close() runs after the last chunk,
+    // also when the import fails, since the chunks before the failure are committed.
+    private class Chunker {
+        private final long startNanos = System.nanoTime();
+        private final List<Product> upserts = new ArrayList<>();
+        private final List<Product> inserts = new ArrayList<>();
+        private final Set<Long> hotProducts = new HashSet<>();
+        private long line;
+        private long rows;
+        private long committedRows;
+        private int chunks;
+
+        void add(Product product) {
+            String problem = validate(product);
+            if (problem != null) {
+                throw failure(problem);
+            }
+            if (product.getId() == null) {
+                inserts.add(product);
+            } else {
+                upserts.add(product);
+                if (inventoryService.isHotMode(product.getId())) {
+                    hotProducts.add(product.getId());
+                }
+            }
+            rows++;
+            if (upserts.size() + inserts.size() >= chunkSize) {
+                flush();
+            }
+        }
+
+        CatalogImportException failure(String reason) {
+            return new CatalogImportException(line, committedRows, reason);
+        }
+
+        void close() {
+            // Stock changed under any hot pool; the cache was kept current chunk by chunk
+            for (Long productId : hotProducts) {
+                inventoryService.refreshHotMode(productId);
+            }
+        }
+
+        ImportResponse result() {
+            long elapsedNanos = Math.max(1, System.nanoTime() - startNanos);
+            return new ImportResponse(rows, chunks, elapsedNanos / 1_000_000,
+                    rows * 1_000_000_000L / elapsedNanos);
+        }
+
+        void flush() {
+            if (upserts.isEmpty() && inserts.isEmpty()) {
+                return;
+            }
+            // Inserts go first: their ids come from the sequence, which an explicit id in this
+            // chunk may not have been moved past yet
+            transactionTemplate.executeWithoutResult(status -> {
+                if (!inserts.isEmpty()) {
+                    assignIds(inserts);
+                    jdbcTemplate.batchUpdate(INSERT_SQL, inserts, inserts.size(), (statement, product) -> {
+                        statement.setLong(1, product.getId());
+                        statement.setString(2, product.getName());
+                        statement.setBigDecimal(3, product.getPrice().toBigDecimal());
+                        statement.setInt(4, product.getStockQuantity());
+                    });
+                }
+                if (!upserts.isEmpty()) {
+                    jdbcTemplate.batchUpdate(UPSERT_SQL, upserts, upserts.size(), (statement, product) -> {
+                        statement.setLong(1, product.getId());
+                        statement.setString(2, product.getName());
+                        statement.setBigDecimal(3, product.getPrice().toBigDecimal());
+                        statement.setInt(4, product.getStockQuantity());
+                    });
+                    // Dropped again once the chunk commits, so readers see its stock right away
+                    for (Product product : upserts) {
+                        productCache.invalidate(product.getId());
+                    }
+                }
+            });
+            if (!upserts.isEmpty()) {
+                restartSequence();
+            }
+            committedRows += upserts.size() + inserts.size();
+            chunks++;
+            upserts.clear();
+            inserts.clear();
+        }
+    }
+
+    // Take ID blocks from the sequence for the new products, all in one query
+    private void assignIds(List<Product> products) {
+        int blocks = (products.size() + ID_BLOCK - 1) / ID_BLOCK;
+        List<Long> blockStarts = jdbcTemplate.queryForList(
+                "SELECT NEXT VALUE FOR products_seq FROM SYSTEM_RANGE(1, ?)", Long.class, blocks);
+        for (int i = 0; i < products.size(); i++) {
+            products.get(i).setId(blockStarts.get(i / ID_BLOCK) + i % ID_BLOCK);
+        }
+    }
+
+    // Products created under an explicit id do not advance the sequence, so move it past the
+    // highest id or a later block could contain it. Never moved back: blocks already handed out
+    // may not be used up yet. DDL commits on its own in H2, so this runs between chunks, never
+    // inside one.
+    private void restartSequence() {
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM products", Long.class);
+        Long nextValue = jdbcTemplate.queryForObject(
+                "SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = 'PRODUCTS_SEQ'", Long.class);
+        if (maxId != null && nextValue != null && maxId >= nextValue) {
+            jdbcTemplate.execute("ALTER SEQUENCE products_seq RESTART WITH " + (maxId + 1));
+        }
+    }
+
+    private static String validate(Product product) {
+        if (product.getName() == null || product.getName().isBlank()) {
+            return "name is required";
+        }
+        if (product.getPrice() == null || product.getPrice().isNegative()) {
+            return "price must be zero or more";
+        }
+        if (product.getStockQuantity() == null || product.getStockQuantity() < 0) {
+            return "stockQuantity must be zero or more";
+        }
+        return null;
+    }
+
+    private static BufferedReader newReader(InputStream input) {
+        return new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8), 64 * 1024);
+    }
+
+    private static String field(List<String> fields, int index) {
+        return index < fields.size() ? fields.get(index) : "";
+    }
+
+    private static int columnIndex(List<String> columns, String name) {
+        for (int i = 0; i < columns.size(); i++) {
+            String column = columns.get(i).trim().replace("_", "").toLowerCase(Locale.ROOT);
+            if (column.equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int requireColumn(List<String> columns, String name) {
+        int index = columnIndex(columns, name);
+        if (index < 0) {
+            throw new CatalogImportException(1, 0, "missing column " + name);
+        }
+        return index;
+    }
+
+    // Split one CSV line, honouring double-quoted fields.
+    static List<String> splitCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,309 @@
+package com.ecommerce.service;
+
+import com.ecommerce.exception.IdempotencyKeyException;
+import com.ecommerce.model.IdempotencyRecord;
+import com.ecommerce.repository.IdempotencyRecordRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import java.net.URI;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Makes retried requests safe: a request sent with an Idempotency-Key runs once, and a retry
+// with the same key gets the stored response back instead of placing the order again.
+//
+// Duplicates that arrive while the first request is still running wait for it and share its
+// outcome, so a burst of client retries costs one execution. Successful responses are kept for
+// the TTL in the idempotency_keys table, which survives restarts, with the most recent ones
+// cached in memory. Failed requests are not stored: nothing was placed, so a retry runs again.
+// Waiting for in-flight duplicates only works within one instance.
+
+@Service
+public class IdempotencyService {
+
+    // Sent on replayed responses, so clients can tell a replay from a fresh execution
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    public static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyRecordRepository repository;
+    private final ObjectMapper objectMapper;
+    private final int cacheSize;
+    private final long ttlMillis;
+    private final long purgeIntervalMillis;
+
+    private final ConcurrentHashMap<String, InFlight> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, StoredResponse> cache = new ConcurrentHashMap<>();
+    // Insertion order for eviction; may hold keys that were already replaced or removed
+    private final ConcurrentLinkedQueue<StoredResponse> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final LongAdder replays = new LongAdder();
+    private ScheduledExecutorService purger;
+
+    @Autowired
+    public IdempotencyService(IdempotencyRecordRepository repository, ObjectMapper objectMapper,
+                              @Value("${orders.idempotency.cache-size:10000}") int cacheSize,
+                              @Value("${orders.idempotency.ttl:24h}") Duration ttl,
+                              @Value("${orders.idempotency.purge-interval:10m}") Duration purgeInterval) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        this.cacheSize = cacheSize;
+        this.ttlMillis = ttl.toMillis();
+        this.purgeIntervalMillis = purgeInterval.toMillis();
+    }
+
+    @PostConstruct
+    public void startPurger() {
+        purger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "idempotency-purge");
+            thread.setDaemon(true);
+            return thread;
+        });
+        purger.scheduleWithFixedDelay(this::purgeExpired, purgeIntervalMillis, purgeIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stopPurger() {
+        if (purger != null) {
+            purger.shutdownNow();
+        }
+    }
+
+
+    // Run a request at most once per key.
+
+    // @param key the client's Idempotency-Key
+    // @param request the request body; a key may only be reused with an identical body
+    // @param action runs the request; only a 2xx response is stored
+    // @return the response of this execution, or the stored one if the key was seen before
+    // @throws IdempotencyKeyException if the key is too long or was used for a different request
+
+    public ResponseEntity<String> execute(String key, Object request, Supplier<ResponseEntity<?>> action) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new IdempotencyKeyException("Idempotency-Key must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+        String requestHash = hash(request);
+        StoredResponse stored = lookup(key);
+        if (stored != null) {
+            return replay(stored, requestHash);
+        }
+
+        InFlight mine = new InFlight(requestHash);
+        InFlight running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            // A duplicate of a request still running: share its outcome
+            if (!running.requestHash.equals(requestHash)) {
+                throw reused(key);
+            }
+            replays.increment();
+            return toResponse(await(running.result), true);
+        }
+        try {
+            // Look again: the first request may have finished between the lookup and the claim
+            stored = lookup(key);
+            if (stored != null) {
+                mine.result.complete(stored);
+                return replay(stored, requestHash);
+            }
+            ResponseEntity<?> response = action.get();
+            stored = toStored(key, requestHash, response);
+            if (response.getStatusCode().is2xxSuccessful()) {
+                store(stored);
+            }
+            mine.result.complete(stored);
+            return toResponse(stored, false);
+        } catch (RuntimeException e) {
+            mine.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    // Delete stored responses past their TTL; runs on the purge thread.
+    public int purgeExpired() {
+        try {
+            return repository.deleteExpired(LocalDateTime.now());
+        } catch (Exception e) {
+            System.err.println("Error purging expired idempotency keys: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    public int getCachedCount() {
+        return cache.size();
+    }
+
+    // Responses served to a retry instead of running the request again.
+    public long getReplayCount() {
+        return replays.sum();
+    }
+
+    private StoredResponse lookup(String key) {
+        long now = System.currentTimeMillis();
+        StoredResponse stored = cache.get(key);
+        if (stored != null) {
+            if (stored.expiresAt > now) {
+                return stored;
+            }
+            cache.remove(key, stored);
+        }
+        Optional<IdempotencyRecord> record = repository.findById(key);
+        if (record.isEmpty()) {
+            return null;
+        }
+        stored = StoredResponse.from(record.get());
+        if (stored.expiresAt <= now) {
+            return null;
+        }
+        cache(stored);
+        return stored;
+    }
+
+    private void store(StoredResponse stored) {
+        cache(stored);
+        try {
+            repository.save(stored.toRecord());
+        } catch (Exception e) {
+            // Log but don't throw - the order is placed; only a retry after a restart would miss the key
+            System.err.println("Error storing idempotency key " + stored.key + ": " + e.getMessage());
+        }
+    }
+
+    private void cache(StoredResponse stored) {
+        cache.put(stored.key, stored);
+        insertionOrder.add(stored);
+        queued.incrementAndGet();
+        // The queue may also fill up with stale entries, so it is bounded as well
+        while (cache.size() > cacheSize || queued.get() > 2 * cacheSize) {
+            StoredResponse oldest = insertionOrder.poll();
+            if (oldest == null) {
+                return;
+            }
+            queued.decrementAndGet();
+            cache.remove(oldest.key, oldest);
+        }
+    }
+
+    private ResponseEntity<String> replay(StoredResponse stored, String requestHash) {
+        if (!stored.requestHash.equals(requestHash)) {
+            throw reused(stored.key);
+        }
+        replays.increment();
+        return toResponse(stored, true);
+    }
+
+    private StoredResponse toStored(String key, String requestHash, ResponseEntity<?> response) {
+        try {
+            URI location = response.getHeaders().getLocation();
+            return new StoredResponse(key, requestHash, response.getStatusCode().value(),
+                    location == null ? null : location.toString(),
+                    objectMapper.writeValueAsString(response.getBody()),
+                    System.currentTimeMillis() + ttlMillis);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Response cannot be stored for idempotency key " + key, e);
+        }
+    }
+
+    private static ResponseEntity<String> toResponse(StoredResponse stored, boolean replayed) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(stored.statusCode)
+                .contentType(MediaType.APPLICATION_JSON);
+        if (stored.location != null) {
+            builder.header(HttpHeaders.LOCATION, stored.location);
+        }
+        if (replayed) {
+            builder.header(REPLAYED_HEADER, "true");
+        }
+        return builder.body(stored.body);
+    }
+
+    private static StoredResponse await(CompletableFuture<StoredResponse> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            // The first request failed; the duplicate fails the same way
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private String hash(Object request) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(digest);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Request cannot be hashed", e);
+        }
+    }
+
+    private static IdempotencyKeyException reused(String key) {
+        return new IdempotencyKeyException("Idempotency-Key " + key + " was already used for a different request");
+    }
+
+    private static final class InFlight {
+        final String requestHash;
+        final CompletableFuture<StoredResponse> result = new CompletableFuture<>();
+
+        InFlight(String requestHash) {
+            this.requestHash = requestHash;
+        }
+    }
+
+    private static final class StoredResponse {
+        final String key;
+        final String requestHash;
+        final int statusCode;
+        final String location;
+        final String body;
+        final long expiresAt;
+
+        StoredResponse(String key, String requestHash, int statusCode, String location, String body, long expiresAt) {
+            this.key = key;
+            this.requestHash = requestHash;
+            this.statusCode = statusCode;
+            this.location = location;
+            this.body = body;
+            this.expiresAt = expiresAt;
+        }
+
+        static StoredResponse from(IdempotencyRecord record) {
+            long expiresAt = record.getExpiresAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            return new StoredResponse(record.getIdempotencyKey(), record.getRequestHash(), record.getStatusCode(),
+                    record.getLocation(), record.getResponseBody(), expiresAt);
+        }
+
+        IdempotencyRecord toRecord() {
+            LocalDateTime expiry = LocalDateTime.ofInstant(Instant.ofEpochMilli(expiresAt), ZoneId.systemDefault());
+            return new IdempotencyRecord(key, requestHash, statusCode, location, body, expiry);
+        }
+    }
+}
@@ -1,27 +1,46 @@
 package com.ecommerce.service;
 
+import com.ecommerce.dto.OrderItemRequest;
 import com.ecommerce.exception.OutOfStockException;
 import com.ecommerce.exception.ProductNotFoundException;
+import com.ecommerce.exception.ReservationExpiredException;
 import com.ecommerce.model.Product;
 import com.ecommerce.repository.ProductRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 // Service for managing product inventory operations.
+// Product reads go through ProductCache; whatever writes stock invalidates the product there.
+//
+// A deduction commits its reservations in the ledger only once the stock UPDATE is committed.
+// Until then other transactions still see the old stock_quantity, so the reservation has to
+// keep holding the units; on rollback it stays active for the caller to release or retry.
 
 @Service
 @Transactional
 public class InventoryService {
 
     private final ProductRepository productRepository;
-    private final Map<Long, Integer> lockedStock = new HashMap<>();
+    private final ReservationLedger reservationLedger;
+    private final ProductCache productCache;
 
     @Autowired
-    public InventoryService(ProductRepository productRepository) {
+    public InventoryService(ProductRepository productRepository, ReservationLedger reservationLedger,
+                            ProductCache productCache) {
         this.productRepository = productRepository;
+        this.reservationLedger = reservationLedger;
+        this.productCache = productCache;
     }
 
     
@@ -32,77 +51,288 @@ public class InventoryService {
     // @return true if sufficient stock is available
     
     public boolean isStockAvailable(Long productId, Integer quantity) {
-        Product product = getProduct(productId);
-        int availableStock = product.getStockQuantity() - lockedStock.getOrDefault(productId, 0);
-        return availableStock >= quantity;
+        return getAvailableStock(getProduct(productId)) >= quantity;
     }
 
     
     // Lock stock for a product to reserve it for an order.
+    // The reservation expires on its own if it is neither deducted nor released in time.
 
     // @param productId the product ID
     // @param quantity quantity to lock
+    // @param owner who the stock is held for
+    // @return the reservation holding the stock
     // @throws ProductNotFoundException if product doesn't exist
     // @throws OutOfStockException if insufficient stock available
     
-    public void lockStock(Long productId, Integer quantity) {
-        Product product = getProduct(productId);
-        int currentLocked = lockedStock.getOrDefault(productId, 0);
-        int availableStock = product.getStockQuantity() - currentLocked;
+    public Reservation lockStock(Long productId, Integer quantity, String owner) {
+        return lockStock(getProduct(productId), quantity, owner);
+    }
+
+    
+    // Lock stock for an already loaded product, without going back to the database.
+
+    // @param product the product
+    // @param quantity quantity to lock
+    // @param owner who the stock is held for
+    // @return the reservation holding the stock
+    // @throws OutOfStockException if insufficient stock available
+    
+    public Reservation lockStock(Product product, Integer quantity, String owner) {
+        return reservationLedger.reserve(product, quantity, owner);
+    }
+
+    
+    // Reserve stock for every line of an order as one batch. Lines for the same product are
+    // merged, products are loaded with one query and reserved in ascending ID order, and
+    // either every product is reserved or none is.
+
+    // @param items the order lines
+    // @param owner who the stock is held for
+    // @return the batch holding one reservation per product
+    // @throws ProductNotFoundException if any product doesn't exist
+    // @throws OutOfStockException if any product has insufficient stock
+    
+    public ReservationBatch reserveAll(List<OrderItemRequest> items, String owner) {
+        SortedMap<Long, Integer> quantities = quantitiesByProduct(items);
+        Map<Long, Product> products = getProducts(quantities.keySet());
+        List<Reservation> reservations = reservationLedger.reserveAll(quantities, products, owner);
+        return new ReservationBatch(owner, reservations, products);
+    }
+
+    
+    // Reserve stock for every line of an order against products loaded beforehand, e.g. once
+    // for a whole batch of orders. Same all-or-nothing rules as reserveAll(items, owner).
+
+    // @param items the order lines
+    // @param owner who the stock is held for
+    // @param products loaded products keyed by ID; may hold products of other orders too
+    // @return the batch holding one reservation per product
+    // @throws ProductNotFoundException if a product of the order is not among the loaded ones
+    // @throws OutOfStockException if any product has insufficient stock
 
-        if (availableStock < quantity) {
-            throw new OutOfStockException(product.getName(), availableStock, quantity);
+    public ReservationBatch reserveAll(List<OrderItemRequest> items, String owner, Map<Long, Product> products) {
+        SortedMap<Long, Integer> quantities = quantitiesByProduct(items);
+        Map<Long, Product> orderProducts = new HashMap<>();
+        for (Long productId : quantities.keySet()) {
+            Product product = products.get(productId);
+            if (product == null) {
+                throw new ProductNotFoundException(productId);
+            }
+            orderProducts.put(productId, product);
         }
+        List<Reservation> reservations = reservationLedger.reserveAll(quantities, orderProducts, owner);
+        return new ReservationBatch(owner, reservations, orderProducts);
+    }
 
-        lockedStock.put(productId, currentLocked + quantity);
+    
+    // Deduct all stock of a reservation batch after successful order processing.
+
+    // @param batch the batch being fulfilled
+    
+    public void deductStock(ReservationBatch batch) {
+        for (Reservation reservation : batch.getReservations()) {
+            deductStock(reservation);
+        }
     }
 
     
-    // Deduct stock from inventory after successful order processing.
+    // Deduct the stock of several batches at once, with one guarded UPDATE per product however
+    // many batches hold it. Products are updated in ascending ID order. The reservations are
+    // committed in the ledger once the transaction commits, and stay active if it rolls back.
 
-    // @param productId the product ID
-    // @param quantity quantity to deduct
-    
-    public void deductStock(Long productId, Integer quantity) {
-        Product product = getProduct(productId);
-        product.setStockQuantity(product.getStockQuantity() - quantity);
-        productRepository.save(product);
-
-        // Release locked stock
-        int currentLocked = lockedStock.getOrDefault(productId, 0);
-        int newLocked = Math.max(0, currentLocked - quantity);
-        if (newLocked == 0) {
-            lockedStock.remove(productId);
-        } else {
-            lockedStock.put(productId, newLocked);
+    // @param batches the batches being fulfilled
+    // @throws ReservationExpiredException if any reservation is no longer active
+    // @throws OutOfStockException if any product has less left than the batches need together
+
+    public void deductStockAll(Collection<ReservationBatch> batches) {
+        SortedMap<Long, Integer> quantities = new TreeMap<>();
+        for (ReservationBatch batch : batches) {
+            for (Reservation reservation : batch.getReservations()) {
+                if (!reservation.isActive()) {
+                    throw new ReservationExpiredException(reservation.getId());
+                }
+                quantities.merge(reservation.getProductId(), reservation.getQuantity(), Integer::sum);
+            }
+        }
+
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            int updated = productRepository.decrementStock(entry.getKey(), entry.getValue());
+            productCache.invalidate(entry.getKey());
+            if (updated == 0) {
+                Product product = getProduct(entry.getKey());
+                throw new OutOfStockException(product.getName(), product.getStockQuantity(), entry.getValue());
+            }
+        }
+
+        List<Reservation> reservations = new ArrayList<>();
+        for (ReservationBatch batch : batches) {
+            reservations.addAll(batch.getReservations());
+        }
+        commitAfterTransaction(reservations);
+    }
+
+    
+    // Deduct reserved stock from inventory after successful order processing.
+    // Uses a single guarded UPDATE, so concurrent deductions can never drive stock negative.
+    // The reservation is committed in the ledger once the transaction commits.
+
+    // @param reservation the reservation being fulfilled
+    // @throws ReservationExpiredException if the reservation is no longer active
+    // @throws ProductNotFoundException if product doesn't exist
+    // @throws OutOfStockException if less than the requested quantity is left
+    
+    public void deductStock(Reservation reservation) {
+        if (!reservation.isActive()) {
+            throw new ReservationExpiredException(reservation.getId());
+        }
+
+        Long productId = reservation.getProductId();
+        int quantity = reservation.getQuantity();
+        int updated = productRepository.decrementStock(productId, quantity);
+        productCache.invalidate(productId);
+        if (updated == 0) {
+            Product product = getProduct(productId);
+            throw new OutOfStockException(product.getName(), product.getStockQuantity(), quantity);
         }
+
+        commitAfterTransaction(List.of(reservation));
     }
 
     
     // Release locked stock (in case of order failure).
 
+    // @param reservation the reservation to release
+    
+    public void releaseLock(Reservation reservation) {
+        reservationLedger.release(reservation);
+    }
+
+    
+    // Release every reservation of a batch that is still held.
+
+    // @param batch the batch to release
+    
+    public void releaseLock(ReservationBatch batch) {
+        for (Reservation reservation : batch.getReservations()) {
+            reservationLedger.release(reservation);
+        }
+    }
+
+    
+    // Get the stock of a product that is not held by any reservation.
+
+    // @param product the product, with its current on-hand stock
+    // @return available quantity
+    
+    public int getAvailableStock(Product product) {
+        return product.getStockQuantity() - reservationLedger.getReserved(product.getId());
+    }
+
+    
+    // Switch a product to hot mode for a flash sale: its available stock is split over
+    // sub-buckets so concurrent orders do not all contend on one counter.
+
+    // @param productId the product ID
+    // @param buckets number of sub-buckets
+    // @return false if the product already was in hot mode
+    // @throws ProductNotFoundException if product doesn't exist
+    
+    public boolean enableHotMode(Long productId, int buckets) {
+        // Size the pool from the row itself, not from a possibly stale cached copy
+        Product product = productRepository.findById(productId)
+                .orElseThrow(() -> new ProductNotFoundException(productId));
+        return reservationLedger.enableHotMode(product, buckets);
+    }
+
+    
+    // Switch a product back from hot mode.
+
     // @param productId the product ID
-    // @param quantity quantity to release
-    
-    public void releaseLock(Long productId, Integer quantity) {
-        int currentLocked = lockedStock.getOrDefault(productId, 0);
-        int newLocked = Math.max(0, currentLocked - quantity);
-        if (newLocked == 0) {
-            lockedStock.remove(productId);
-        } else {
-            lockedStock.put(productId, newLocked);
+    // @return false if the product was not in hot mode
+    
+    public boolean disableHotMode(Long productId) {
+        return reservationLedger.disableHotMode(productId);
+    }
+
+    
+    // Rebuild a hot product's pool after its stock was changed from outside the order flow,
+    // e.g. by a restock. Reservations taken from the old pool stay valid.
+
+    // @param productId the product ID
+    // @return false if the product was not in hot mode
+    
+    public boolean refreshHotMode(Long productId) {
+        int buckets = reservationLedger.getHotBucketCount(productId);
+        if (buckets == 0 || !reservationLedger.disableHotMode(productId)) {
+            return false;
         }
+        enableHotMode(productId, buckets);
+        return true;
+    }
+
+    public boolean isHotMode(Long productId) {
+        return reservationLedger.isHot(productId);
     }
 
     
-    // Get product by ID.
+    // Get product by ID, from the cache if possible.
 
     // @param productId the product ID
-    // @return the product
+    // @return a detached copy of the product
     // @throws ProductNotFoundException if product doesn't exist
     
     public Product getProduct(Long productId) {
-        return productRepository.findById(productId)
+        return productCache.get(productId, productRepository::findById)
                 .orElseThrow(() -> new ProductNotFoundException(productId));
     }
+
+    
+    // Get several products; the ones not cached are loaded with a single query.
+
+    // @param productIds the product IDs, duplicates allowed
+    // @return detached copies of the products keyed by ID
+    // @throws ProductNotFoundException for the first ID that doesn't exist
+    
+    public Map<Long, Product> getProducts(Collection<Long> productIds) {
+        Map<Long, Product> products = findProducts(productIds);
+        for (Long productId : productIds) {
+            if (!products.containsKey(productId)) {
+                throw new ProductNotFoundException(productId);
+            }
+        }
+        return products;
+    }
+
+    
+    // Get whichever of several products exist; the ones not cached are loaded with a single query.
+
+    // @param productIds the product IDs, duplicates allowed
+    // @return detached copies of the existing products keyed by ID
+
+    public Map<Long, Product> findProducts(Collection<Long> productIds) {
+        return productCache.getAll(new LinkedHashSet<>(productIds), productRepository::findAllById);
+    }
+
+    // Without a transaction (e.g. in tests) the UPDATE is already visible, so commit right away
+    private void commitAfterTransaction(List<Reservation> reservations) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            reservations.forEach(reservationLedger::commit);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                reservations.forEach(reservationLedger::commit);
+            }
+        });
+    }
+
+    private static SortedMap<Long, Integer> quantitiesByProduct(List<OrderItemRequest> items) {
+        SortedMap<Long, Integer> quantities = new TreeMap<>();
+        for (OrderItemRequest item : items) {
+            quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+        return quantities;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,170 @@
+package com.ecommerce.service;
+
+import com.ecommerce.dto.OrderResponse;
+import com.ecommerce.model.ArchivedOrder;
+import com.ecommerce.model.Order;
+import com.ecommerce.repository.ArchivedOrderRepository;
+import com.ecommerce.repository.OrderRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Archival of old orders, so the orders and order_items tables and their indexes only hold
+// orders that are still read.
+//
+// Completed and cancelled orders older than orders.archive.after are moved to archived_orders,
+// one row per order holding its gzip-compressed OrderResponse, chunk-size orders per
+// transaction: each chunk is copied and deleted from the live tables in the same transaction,
+// so an order is always in exactly one place. getOrder falls back to the archive. The job runs
+// every orders.archive.interval.
+
+@Service
+public class OrderArchiveService {
+
+    private static final Set<Order.OrderStatus> FINAL_STATUSES =
+            Set.of(Order.OrderStatus.COMPLETED, Order.OrderStatus.CANCELLED);
+
+    private final OrderRepository orderRepository;
+    private final ArchivedOrderRepository archivedOrderRepository;
+    private final OrderResponseCache orderResponseCache;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Duration archiveAfter;
+    private final int chunkSize;
+    private final long intervalMillis;
+    private final LongAdder archivedCount = new LongAdder();
+    private ScheduledExecutorService archiver;
+
+    @Autowired
+    public OrderArchiveService(OrderRepository orderRepository, ArchivedOrderRepository archivedOrderRepository,
+                               OrderResponseCache orderResponseCache, TransactionTemplate transactionTemplate,
+                               ObjectMapper objectMapper,
+                               @Value("${orders.archive.after:90d}") Duration archiveAfter,
+                               @Value("${orders.archive.chunk-size:500}") int chunkSize,
+                               @Value("${orders.archive.interval:1h}") Duration interval) {
+        this.orderRepository = orderRepository;
+        this.archivedOrderRepository = archivedOrderRepository;
+        this.orderResponseCache = orderResponseCache;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.archiveAfter = archiveAfter;
+        this.chunkSize = chunkSize;
+        this.intervalMillis = interval.toMillis();
+    }
+
+    @PostConstruct
+    public void startArchiver() {
+        archiver = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "order-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        archiver.scheduleWithFixedDelay(this::archiveOldOrders, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stopArchiver() {
+        if (archiver != null) {
+            archiver.shutdownNow();
+        }
+    }
+
+    // Archive the orders past orders.archive.after; runs on the archiver thread.
+    public int archiveOldOrders() {
+        try {
+            return archiveOrdersPlacedBefore(LocalDateTime.now().minus(archiveAfter));
+        } catch (Exception e) {
+            System.err.println("Error archiving orders: " + e.getMessage());
+            return 0;
+        }
+    }
+
+
+    // Move the completed and cancelled orders placed before the cutoff to the archive, one
+    // chunk per transaction. Orders archived by earlier chunks stay archived if a later one fails.
+
+    // @param cutoff orders placed before this are archived
+    // @return the number of orders archived
+
+    public int archiveOrdersPlacedBefore(LocalDateTime cutoff) {
+        int total = 0;
+        int archived;
+        do {
+            archived = archiveChunk(cutoff);
+            total += archived;
+        } while (archived == chunkSize && !Thread.currentThread().isInterrupted());
+        return total;
+    }
+
+    // An archived order, or empty if the order was never archived.
+    public Optional<OrderResponse> findArchived(Long orderId) {
+        return archivedOrderRepository.findById(orderId).map(archived -> readDocument(archived.getDocument()));
+    }
+
+    public long getArchivedCount() {
+        return archivedCount.sum();
+    }
+
+    private int archiveChunk(LocalDateTime cutoff) {
+        List<Long> ids = transactionTemplate.execute(status -> {
+            List<Long> chunk = orderRepository.findIdsPlacedBefore(cutoff, FINAL_STATUSES, PageRequest.ofSize(chunkSize));
+            if (chunk.isEmpty()) {
+                return chunk;
+            }
+            LocalDateTime now = LocalDateTime.now();
+            List<ArchivedOrder> archived = new ArrayList<>(chunk.size());
+            for (OrderResponse order : OrderResponse.fromLines(orderRepository.findLinesByOrderIdIn(chunk))) {
+                archived.add(new ArchivedOrder(order.getId(), now, writeDocument(order)));
+            }
+            archivedOrderRepository.saveAll(archived);
+            orderRepository.deleteItemsByOrderIdIn(chunk);
+            orderRepository.deleteByIdIn(chunk);
+            return chunk;
+        });
+        // Cold from now on; the archive serves the odd late read
+        ids.forEach(orderResponseCache::invalidate);
+        archivedCount.add(ids.size());
+        return ids.size();
+    }
+
+    private byte[] writeDocument(OrderResponse order) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream output = new GZIPOutputStream(bytes)) {
+            objectMapper.writeValue(output, order);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Order " + order.getId() + " cannot be archived", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private OrderResponse readDocument(byte[] document) {
+        try (InputStream input = new GZIPInputStream(new ByteArrayInputStream(document))) {
+            return objectMapper.readValue(input, OrderResponse.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Archived order cannot be read", e);
+        }
+    }
+}
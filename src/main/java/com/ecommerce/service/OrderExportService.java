@@ -0,0 +1,83 @@
+package com.ecommerce.service;
+
+import com.ecommerce.dto.OrderLine;
+import com.ecommerce.dto.OrderResponse;
+import com.ecommerce.repository.OrderRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+
+// Export of orders as newline-delimited JSON, one OrderResponse per line.
+//
+// The orders are read through a forward-only cursor of projection rows rather than as entities,
+// so nothing piles up in the persistence context, and each order is written out as soon as its
+// last row has been read. Output is flushed every FLUSH_EVERY orders, so the client receives the
+// export as it is produced and memory stays flat however many orders the range holds.
+
+@Service
+public class OrderExportService {
+
+    // Orders written between flushes, matching the fetch size of the export query
+    static final int FLUSH_EVERY = 1000;
+
+    private final OrderRepository orderRepository;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public OrderExportService(OrderRepository orderRepository, ObjectMapper objectMapper) {
+        this.orderRepository = orderRepository;
+        this.objectMapper = objectMapper;
+    }
+
+
+    // Write the live orders placed in [from, to), oldest first, as NDJSON; archived orders are
+    // left out. Holds a database connection until the last order has been written.
+
+    // @param from start of the range, inclusive
+    // @param to end of the range, exclusive
+    // @param output where the lines are written; flushed, but not closed
+    // @return the number of orders exported
+    // @throws UncheckedIOException if writing fails, e.g. because the client went away
+
+    @Transactional(readOnly = true)
+    public long exportNdjson(LocalDateTime from, LocalDateTime to, OutputStream output) {
+        long[] exported = {0};
+        try (Stream<OrderLine> lines = orderRepository.streamLinesByOrderDate(from, to)) {
+            OrderResponse.fromLines(lines.iterator(), order -> {
+                write(order, output);
+                if (++exported[0] % FLUSH_EVERY == 0) {
+                    flush(output);
+                }
+            });
+        }
+        flush(output);
+        return exported[0];
+    }
+
+    private void write(OrderResponse order, OutputStream output) {
+        try {
+            // Not objectMapper.writeValue(output, ...), which would close the output
+            output.write(objectMapper.writeValueAsBytes(order));
+            output.write('\n');
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Order " + order.getId() + " cannot be serialized", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write export", e);
+        }
+    }
+
+    private static void flush(OutputStream output) {
+        try {
+            output.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write export", e);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.ecommerce.service;
+
+import com.ecommerce.model.Order;
+import com.ecommerce.repository.OrderRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.util.ArrayList;
+import java.util.List;
+
+// Saves paid orders with their stock deducted, as many orders per transaction as possible.
+//
+// The group is first saved in one transaction, deducting its stock with one guarded UPDATE per
+// product. If that transaction fails anywhere up to and including its commit (a product running
+// short, or an insert failing when it is flushed at commit), each order is saved again in a
+// transaction of its own, so only the orders at fault fail. The retries can succeed because the
+// ledger commits reservations only once a deduction commits (see InventoryService): a rolled
+// back group leaves them active.
+
+@Component
+public class OrderGroupSaver {
+
+    private final OrderRepository orderRepository;
+    private final InventoryService inventoryService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public OrderGroupSaver(OrderRepository orderRepository, InventoryService inventoryService,
+                           TransactionTemplate transactionTemplate) {
+        this.orderRepository = orderRepository;
+        this.inventoryService = inventoryService;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+
+    // Save paid orders and deduct their stock, falling back to one transaction per order.
+
+    // @param orders the orders, with status already set
+    // @param reservations the reservation of each order, at the same position
+    // @return one result per order, at the same position
+
+    public List<SaveResult> saveAll(List<Order> orders, List<ReservationBatch> reservations) {
+        try {
+            List<Order> saved = transactionTemplate.execute(status -> {
+                List<Order> savedOrders = orderRepository.saveAll(orders);
+                inventoryService.deductStockAll(reservations);
+                return savedOrders;
+            });
+            List<SaveResult> results = new ArrayList<>(saved.size());
+            for (Order order : saved) {
+                results.add(new SaveResult(order, null));
+            }
+            return results;
+        } catch (RuntimeException e) {
+            if (orders.size() == 1) {
+                return List.of(new SaveResult(null, e));
+            }
+            List<SaveResult> results = new ArrayList<>(orders.size());
+            for (int i = 0; i < orders.size(); i++) {
+                results.add(saveOne(orders.get(i), reservations.get(i)));
+            }
+            return results;
+        }
+    }
+
+    // Fallback after the group's transaction failed: this order alone
+    private SaveResult saveOne(Order order, ReservationBatch reservation) {
+        try {
+            Order saved = transactionTemplate.execute(status -> {
+                // The rolled back group may have assigned IDs already
+                order.setId(null);
+                order.getItems().forEach(item -> item.setId(null));
+                Order savedOrder = orderRepository.save(order);
+                inventoryService.deductStock(reservation);
+                return savedOrder;
+            });
+            return new SaveResult(saved, null);
+        } catch (RuntimeException e) {
+            return new SaveResult(null, e);
+        }
+    }
+
+    // Outcome of one order: the saved order, or why it could not be saved.
+    public static final class SaveResult {
+        private final Order order;
+        private final RuntimeException failure;
+
+        SaveResult(Order order, RuntimeException failure) {
+            this.order = order;
+            this.failure = failure;
+        }
+
+        public boolean isSaved() {
+            return failure == null;
+        }
+
+        // null unless saved
+        public Order getOrder() {
+            return order;
+        }
+
+        // null if saved; the order's reservation is left uncommitted then
+        public RuntimeException getFailure() {
+            return failure;
+        }
+    }
+}
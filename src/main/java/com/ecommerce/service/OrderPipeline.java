@@ -0,0 +1,174 @@
+package com.ecommerce.service;
+
+import com.ecommerce.exception.OrderNotFoundException;
+import com.ecommerce.model.Money;
+import com.ecommerce.model.Order;
+import com.ecommerce.repository.OrderRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Finishes orders placed asynchronously. The request thread reserves the stock and saves the
+// order as PENDING; a fixed pool of workers then takes the payment and either completes the
+// order and deducts the stock or cancels it and releases the stock (refunding the payment if it
+// went through). With
+// spring.threads.virtual.enabled (Java 21) every admitted order gets a virtual thread instead,
+// so a slow payment provider no longer leaves orders queued behind busy workers.
+//
+// At most workers + queue-capacity orders are admitted at a time. A request that finds the
+// pipeline full is turned away before anything is reserved, so a burst degrades into quick
+// rejections instead of a growing backlog of held stock.
+
+@Component
+public class OrderPipeline {
+
+    private final OrderRepository orderRepository;
+    private final InventoryService inventoryService;
+    private final PaymentService paymentService;
+    private final TransactionTemplate transactionTemplate;
+    private final int workers;
+    private final boolean virtualThreads;
+    private final int capacity;
+    private final Semaphore admissions;
+    private final LongAdder completedCount = new LongAdder();
+    private final LongAdder cancelledCount = new LongAdder();
+    private Executor executor;
+
+    @Autowired
+    public OrderPipeline(OrderRepository orderRepository, InventoryService inventoryService,
+                         PaymentService paymentService, TransactionTemplate transactionTemplate,
+                         @Value("${orders.async.workers:8}") int workers,
+                         @Value("${orders.async.queue-capacity:1000}") int queueCapacity,
+                         @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.orderRepository = orderRepository;
+        this.inventoryService = inventoryService;
+        this.paymentService = paymentService;
+        this.transactionTemplate = transactionTemplate;
+        this.workers = workers;
+        this.virtualThreads = virtualThreads;
+        this.capacity = workers + queueCapacity;
+        this.admissions = new Semaphore(capacity);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (virtualThreads) {
+            executor = new VirtualThreadTaskExecutor("order-worker-");
+            return;
+        }
+        AtomicInteger workerCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "order-worker-" + workerCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Let admitted orders finish; any still pending after that keep their PENDING status and
+    // their stock comes back when the reservations expire.
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (executor instanceof ExecutorService pool) {
+            pool.shutdown();
+        }
+        // Every admission is returned once its order is done, whichever executor ran it
+        if (admissions.tryAcquire(capacity, 30, TimeUnit.SECONDS)) {
+            admissions.release(capacity);
+        }
+    }
+
+    // Claim room for one order. Every successful call must be followed by submit or cancelAdmission.
+    public boolean tryAdmit() {
+        return admissions.tryAcquire();
+    }
+
+    public void cancelAdmission() {
+        admissions.release();
+    }
+
+
+    // Hand a saved PENDING order to the workers. Call only once the order is committed,
+    // since a worker may pick it up straight away.
+
+    // @param orderId the saved order's ID
+    // @param totalAmount amount to charge
+    // @param reservation the order's stock reservation
+
+    public void submit(Long orderId, Money totalAmount, ReservationBatch reservation) {
+        executor.execute(() -> {
+            try {
+                process(orderId, totalAmount, reservation);
+            } finally {
+                admissions.release();
+            }
+        });
+    }
+
+    // Orders admitted and not finished yet
+    public int getInProgressCount() {
+        return capacity - admissions.availablePermits();
+    }
+
+    public long getCompletedCount() {
+        return completedCount.sum();
+    }
+
+    public long getCancelledCount() {
+        return cancelledCount.sum();
+    }
+
+    // Package-private so tests can run an order without the worker pool.
+    void process(Long orderId, Money totalAmount, ReservationBatch reservation) {
+        String transactionId;
+        try {
+            transactionId = paymentService.processPayment(totalAmount, reservation.getOwner());
+        } catch (RuntimeException e) {
+            cancel(orderId, reservation, e);
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Order order = orderRepository.findById(orderId)
+                        .orElseThrow(() -> new OrderNotFoundException(orderId));
+                order.setStatus(Order.OrderStatus.COMPLETED);
+                inventoryService.deductStock(reservation);
+            });
+            completedCount.increment();
+        } catch (RuntimeException e) {
+            refund(transactionId, totalAmount, reservation.getOwner());
+            cancel(orderId, reservation, e);
+        }
+    }
+
+    private void refund(String transactionId, Money totalAmount, String customerEmail) {
+        try {
+            paymentService.refundPayment(transactionId, totalAmount, customerEmail);
+        } catch (RuntimeException e) {
+            // Log but don't throw - the refund has to be settled by hand
+            System.err.println("Error refunding " + transactionId + " for " + customerEmail + ": " + e.getMessage());
+        }
+    }
+
+    private void cancel(Long orderId, ReservationBatch reservation, RuntimeException cause) {
+        try {
+            inventoryService.releaseLock(reservation);
+            transactionTemplate.executeWithoutResult(status -> orderRepository.findById(orderId)
+                    .ifPresent(order -> order.setStatus(Order.OrderStatus.CANCELLED)));
+            cancelledCount.increment();
+        } catch (RuntimeException e) {
+            // Log but don't throw - the reservation still expires on its own
+            System.err.println("Error cancelling order " + orderId + " (" + cause.getMessage() + "): " + e.getMessage());
+        }
+    }
+}
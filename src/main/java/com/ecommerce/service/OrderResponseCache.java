@@ -0,0 +1,147 @@
+package com.ecommerce.service;
+
+import com.ecommerce.dto.OrderResponse;
+import com.ecommerce.model.Order;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Serialized responses of orders that can no longer change.
+//
+// A COMPLETED or CANCELLED order is final, so its JSON is kept as it was first served, with an
+// ETag derived from those bytes: repeat reads skip the database and the serializer, and a client
+// holding the ETag gets 304 Not Modified. There is no Last-Modified: orders do not record when
+// they became final, and their order date would be earlier than that. Pending orders are never
+// cached. The oldest entries are evicted once the cache is full; there is no TTL since the
+// entries cannot go stale.
+
+@Component
+public class OrderResponseCache {
+
+    private final ConcurrentHashMap<Long, CachedOrder> entries = new ConcurrentHashMap<>();
+    // Insertion order for eviction; may hold entries that were already removed
+    private final ConcurrentLinkedQueue<CachedOrder> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final ObjectMapper objectMapper;
+    private final int maxSize;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @Autowired
+    public OrderResponseCache(ObjectMapper objectMapper,
+                              @Value("${orders.response-cache.max-size:10000}") int maxSize) {
+        this.objectMapper = objectMapper;
+        this.maxSize = maxSize;
+    }
+
+    // Cached response of an order, or null if the order is not cached.
+    public CachedOrder get(Long orderId) {
+        CachedOrder cached = entries.get(orderId);
+        if (cached == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return cached;
+    }
+
+
+    // Serialize an order's response, caching it if the order is final.
+
+    // @param order the order response as read from the database
+    // @return the serialized response with its validators; cached only if the order is final
+
+    public CachedOrder put(OrderResponse order) {
+        CachedOrder cached = serialize(order);
+        if (isFinal(order)) {
+            entries.put(order.getId(), cached);
+            insertionOrder.add(cached);
+            queued.incrementAndGet();
+            evictOverflow();
+        }
+        return cached;
+    }
+
+    // Drop an order, e.g. once it has been removed from the orders table.
+    public void invalidate(Long orderId) {
+        entries.remove(orderId);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    static boolean isFinal(OrderResponse order) {
+        return Order.OrderStatus.COMPLETED.name().equals(order.getStatus())
+                || Order.OrderStatus.CANCELLED.name().equals(order.getStatus());
+    }
+
+    private CachedOrder serialize(OrderResponse order) {
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(order);
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            String etag = "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+            return new CachedOrder(order.getId(), body, etag, isFinal(order));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Order " + order.getId() + " cannot be serialized", e);
+        }
+    }
+
+    private void evictOverflow() {
+        // The queue may also fill up with stale entries, so it is bounded as well
+        while (entries.size() > maxSize || queued.get() > 2 * maxSize) {
+            CachedOrder oldest = insertionOrder.poll();
+            if (oldest == null) {
+                return;
+            }
+            queued.decrementAndGet();
+            entries.remove(oldest.orderId, oldest);
+        }
+    }
+
+    public static final class CachedOrder {
+        private final Long orderId;
+        private final byte[] body;
+        private final String etag;
+        private final boolean cacheable;
+
+        CachedOrder(Long orderId, byte[] body, String etag, boolean cacheable) {
+            this.orderId = orderId;
+            this.body = body;
+            this.etag = etag;
+            this.cacheable = cacheable;
+        }
+
+        // The serialized OrderResponse; callers must not modify it
+        public byte[] getBody() {
+            return body;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        // Whether the order is final, so clients may cache the response as well
+        public boolean isCacheable() {
+            return cacheable;
+        }
+    }
+}
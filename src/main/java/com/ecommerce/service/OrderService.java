@@ -1,126 +1,159 @@
 package com.ecommerce.service;
 
 import com.ecommerce.dto.OrderItemRequest;
+import com.ecommerce.dto.OrderPage;
 import com.ecommerce.dto.OrderRequest;
 import com.ecommerce.dto.OrderResponse;
+import com.ecommerce.exception.InvalidCursorException;
 import com.ecommerce.exception.OrderNotFoundException;
-import com.ecommerce.exception.PaymentFailedException;
+import com.ecommerce.exception.OrderQueueFullException;
+import com.ecommerce.model.Money;
 import com.ecommerce.model.Order;
 import com.ecommerce.model.OrderItem;
 import com.ecommerce.model.Product;
 import com.ecommerce.repository.OrderRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import java.math.BigDecimal;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
 
 // Service for managing order operations and business logic.
+//
+// Order placement never holds a database transaction across the payment call: stock is
+// reserved in memory, the payment runs outside any transaction, and saving the order and
+// deducting the stock happen together in one short transaction afterwards. A failure after
+// a step that cannot be rolled back is compensated: the reservation is released, and a
+// payment already taken is refunded.
 
 @Service
-@Transactional
 public class OrderService {
 
     private final OrderRepository orderRepository;
     private final InventoryService inventoryService;
     private final PaymentService paymentService;
+    private final OrderPipeline orderPipeline;
+    private final TransactionTemplate transactionTemplate;
+    private final OrderWriter orderWriter;
+    private final OrderArchiveService orderArchiveService;
 
     @Autowired
     public OrderService(OrderRepository orderRepository,
                         InventoryService inventoryService,
-                        PaymentService paymentService) {
+                        PaymentService paymentService,
+                        OrderPipeline orderPipeline,
+                        TransactionTemplate transactionTemplate,
+                        OrderWriter orderWriter,
+                        OrderArchiveService orderArchiveService) {
         this.orderRepository = orderRepository;
         this.inventoryService = inventoryService;
         this.paymentService = paymentService;
+        this.orderPipeline = orderPipeline;
+        this.transactionTemplate = transactionTemplate;
+        this.orderWriter = orderWriter;
+        this.orderArchiveService = orderArchiveService;
     }
 
     
     // Create a new order following the complete workflow:
-    // 1. Validate products exist
-    // 2. Check and lock stock
-    // 3. Process payment
-    // 4. Save order
-    // 5. Deduct stock
+    // 1. Validate products exist and lock stock
+    // 2. Process payment, outside any transaction
+    // 3. Save order and deduct stock in one transaction, shared with concurrent orders when
+    //    orders.group-commit.enabled
 
     // @param orderRequest the order request
     // @return order response
     
     public OrderResponse createOrder(OrderRequest orderRequest) {
-        // Step 1: Validate all products exist and lock stock
-        List<Product> products = new ArrayList<>();
+        // Step 1: Validate all products exist and lock stock for the whole order in one batch
         List<OrderItemRequest> itemRequests = orderRequest.getItems();
+        ReservationBatch reservation = inventoryService.reserveAll(itemRequests, orderRequest.getCustomerEmail());
 
+        Order order;
+        String transactionId;
         try {
-            // Validate and lock stock for all items
-            for (OrderItemRequest itemRequest : itemRequests) {
-                Product product = inventoryService.getProduct(itemRequest.getProductId());
-                products.add(product);
-                inventoryService.lockStock(itemRequest.getProductId(), itemRequest.getQuantity());
-            }
+            // Create order with items, reusing the products loaded for the reservation
+            order = buildOrder(orderRequest, reservation);
+
+            // Step 2: Process payment (locked stock is released below if it fails)
+            transactionId = paymentService.processPayment(order.getTotalAmount(), order.getCustomerEmail());
+        } catch (Exception e) {
+            releaseQuietly(reservation);
+            throw e;
+        }
 
-            // Step 2: Create order with items
-            Order order = new Order(orderRequest.getCustomerName(), orderRequest.getCustomerEmail());
-            BigDecimal totalAmount = BigDecimal.ZERO;
-
-            for (int i = 0; i < itemRequests.size(); i++) {
-                OrderItemRequest itemRequest = itemRequests.get(i);
-                Product product = products.get(i);
-
-                OrderItem orderItem = new OrderItem(
-                        null, // ID will be generated by the database
-                        order, // Set the order
-                        product.getId(),
-                        product.getName(),
-                        itemRequest.getQuantity(),
-                        product.getPrice(),
-                        product.getPrice().multiply(BigDecimal.valueOf(itemRequest.getQuantity())) // Calculate subtotal
-                );
-
-                order.addItem(orderItem);
-                totalAmount = totalAmount.add(orderItem.getSubtotal());
+        try {
+            // Step 3: Save order and deduct actual stock; both or neither
+            order.setStatus(Order.OrderStatus.COMPLETED);
+            Order savedOrder;
+            if (orderWriter.isEnabled()) {
+                savedOrder = awaitWrite(order, reservation);
+            } else {
+                savedOrder = transactionTemplate.execute(status -> {
+                    Order saved = orderRepository.save(order);
+                    inventoryService.deductStock(reservation);
+                    return saved;
+                });
             }
+            return new OrderResponse(savedOrder);
 
-            order.setTotalAmount(totalAmount);
+        } catch (Exception e) {
+            // The customer paid for an order that was not placed
+            refundQuietly(transactionId, order);
+            releaseQuietly(reservation);
+            throw e;
+        }
+    }
 
-            // Step 3: Process payment
-            try {
-                paymentService.processPayment(totalAmount, order.getCustomerEmail());
-            } catch (PaymentFailedException e) {
-                // Release locked stock on payment failure
-                for (OrderItemRequest itemRequest : itemRequests) {
-                    inventoryService.releaseLock(itemRequest.getProductId(), itemRequest.getQuantity());
-                }
-                throw e;
-            }
 
-            // Step 4: Save order
-            order.setStatus(Order.OrderStatus.COMPLETED);
-            Order savedOrder = orderRepository.save(order);
+    // Place an order without waiting for payment: stock is reserved and the order saved as
+    // PENDING right away, and OrderPipeline takes the payment and completes or cancels the
+    // order once this transaction commits. Poll getOrder for the outcome.
 
-            // Step 5: Deduct actual stock
-            for (OrderItemRequest itemRequest : itemRequests) {
-                inventoryService.deductStock(itemRequest.getProductId(), itemRequest.getQuantity());
-            }
+    // @param orderRequest the order request
+    // @return the pending order
+    // @throws OrderQueueFullException if the pipeline has no room; nothing is reserved then
 
-            return new OrderResponse(savedOrder);
+    @Transactional
+    public OrderResponse submitOrder(OrderRequest orderRequest) {
+        if (!orderPipeline.tryAdmit()) {
+            throw new OrderQueueFullException();
+        }
+        ReservationBatch reservation;
+        try {
+            reservation = inventoryService.reserveAll(orderRequest.getItems(), orderRequest.getCustomerEmail());
+        } catch (RuntimeException e) {
+            orderPipeline.cancelAdmission();
+            throw e;
+        }
 
-        } catch (Exception e) {
-            // Release any locked stock in case of failure
-            for (OrderItemRequest itemRequest : itemRequests) {
-                try {
-                    inventoryService.releaseLock(itemRequest.getProductId(), itemRequest.getQuantity());
-                } catch (Exception releaseException) {
-                    // Log but don't throw - we want to propagate the original exception
-                    System.err.println("Error releasing lock for product " + itemRequest.getProductId() + ": " + releaseException.getMessage());
-                }
-            }
+        Order savedOrder;
+        try {
+            savedOrder = orderRepository.save(buildOrder(orderRequest, reservation));
+        } catch (RuntimeException e) {
+            abandon(reservation);
             throw e;
         }
+        handOver(savedOrder.getId(), savedOrder.getTotalAmount(), reservation);
+        return new OrderResponse(savedOrder);
     }
 
     
-    // Get order by ID.
+    // Get order by ID. The order and its items are read with one query straight into the
+    // response, without loading entities. Orders no longer in the orders table are looked up in
+    // the archive (see OrderArchiveService).
     
     // @param orderId the order ID
     // @return order response
@@ -128,7 +161,161 @@ public class OrderService {
     
     @Transactional(readOnly = true)
     public OrderResponse getOrder(Long orderId) {
-        Order order = orderRepository.findById(orderId).orElseThrow(() -> new OrderNotFoundException(orderId));
-        return new OrderResponse(order);
+        List<OrderResponse> orders = OrderResponse.fromLines(orderRepository.findLinesByOrderIdIn(List.of(orderId)));
+        if (orders.isEmpty()) {
+            return orderArchiveService.findArchived(orderId)
+                    .orElseThrow(() -> new OrderNotFoundException(orderId));
+        }
+        return orders.get(0);
+    }
+
+
+    // Get one page of a customer's orders, newest first. Each page costs two queries whatever
+    // its depth: the page's order IDs are read by seeking in the customer's index from the
+    // cursor, then those orders and their items are read with one projection query. Only live
+    // orders are listed; the history ends where OrderArchiveService has archived it.
+
+    // @param customerEmail the customer's email
+    // @param cursor nextCursor of the previous page, or null for the first page
+    // @param limit maximum number of orders on the page
+    // @return the page, with the cursor of the next page if there is one
+    // @throws InvalidCursorException if the cursor cannot be decoded
+
+    @Transactional(readOnly = true)
+    public OrderPage getCustomerOrders(String customerEmail, String cursor, int limit) {
+        // One extra row tells whether another page follows
+        PageRequest page = PageRequest.ofSize(limit + 1);
+        List<Long> ids;
+        if (cursor == null) {
+            ids = orderRepository.findHistoryIds(customerEmail, page);
+        } else {
+            Cursor position = Cursor.decode(cursor);
+            ids = orderRepository.findHistoryIdsAfter(customerEmail, position.orderDate, position.id, page);
+        }
+        boolean more = ids.size() > limit;
+        if (more) {
+            ids = ids.subList(0, limit);
+        }
+        if (ids.isEmpty()) {
+            return new OrderPage(List.of(), null);
+        }
+
+        // The projection comes back in ID order; put the orders back in page order
+        Map<Long, Integer> positions = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            positions.put(ids.get(i), i);
+        }
+        List<OrderResponse> orders = new ArrayList<>(OrderResponse.fromLines(orderRepository.findLinesByOrderIdIn(ids)));
+        orders.sort(Comparator.comparing(order -> positions.get(order.getId())));
+
+        OrderResponse last = orders.get(orders.size() - 1);
+        return new OrderPage(orders, more ? new Cursor(last.getOrderDate(), last.getId()).encode() : null);
+    }
+
+    // Package-private for BatchOrderService, which prices its orders the same way.
+    static Order buildOrder(OrderRequest orderRequest, ReservationBatch reservation) {
+        Order order = new Order(orderRequest.getCustomerName(), orderRequest.getCustomerEmail());
+        Money totalAmount = Money.ZERO;
+
+        for (OrderItemRequest itemRequest : orderRequest.getItems()) {
+            Product product = reservation.getProduct(itemRequest.getProductId());
+
+            OrderItem orderItem = new OrderItem(
+                    null, // ID will be generated by the database
+                    order, // Set the order
+                    product.getId(),
+                    product.getName(),
+                    itemRequest.getQuantity(),
+                    product.getPrice(),
+                    product.getPrice().times(itemRequest.getQuantity()) // Calculate subtotal
+            );
+
+            order.addItem(orderItem);
+            totalAmount = totalAmount.plus(orderItem.getSubtotal());
+        }
+
+        order.setTotalAmount(totalAmount);
+        return order;
+    }
+
+    private Order awaitWrite(Order order, ReservationBatch reservation) {
+        try {
+            return orderWriter.write(order, reservation).join();
+        } catch (CompletionException e) {
+            // Surface the writer's failure as if the order had been written here
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    // Workers must not look for the order before it is committed; a rolled back order is abandoned.
+    private void handOver(Long orderId, Money totalAmount, ReservationBatch reservation) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            orderPipeline.submit(orderId, totalAmount, reservation);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    orderPipeline.submit(orderId, totalAmount, reservation);
+                } else {
+                    abandon(reservation);
+                }
+            }
+        });
+    }
+
+    private void abandon(ReservationBatch reservation) {
+        releaseQuietly(reservation);
+        orderPipeline.cancelAdmission();
+    }
+
+    private void releaseQuietly(ReservationBatch reservation) {
+        try {
+            inventoryService.releaseLock(reservation);
+        } catch (Exception releaseException) {
+            // Log but don't throw - we want to propagate the original exception
+            System.err.println("Error releasing locked stock for " + reservation.getOwner() + ": " + releaseException.getMessage());
+        }
+    }
+
+    // Position in a customer's history: the last order of a page. Encoded as URL-safe base64 of
+    // "orderDate|id", so clients treat it as opaque.
+    private static final class Cursor {
+        final LocalDateTime orderDate;
+        final Long id;
+
+        Cursor(LocalDateTime orderDate, Long id) {
+            this.orderDate = orderDate;
+            this.id = id;
+        }
+
+        String encode() {
+            String position = orderDate + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String cursor) {
+            try {
+                String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = position.indexOf('|');
+                return new Cursor(LocalDateTime.parse(position.substring(0, separator)),
+                        Long.valueOf(position.substring(separator + 1)));
+            } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+                throw new InvalidCursorException(cursor);
+            }
+        }
+    }
+
+    private void refundQuietly(String transactionId, Order order) {
+        try {
+            paymentService.refundPayment(transactionId, order.getTotalAmount(), order.getCustomerEmail());
+        } catch (Exception refundException) {
+            // Log but don't throw - the refund has to be settled by hand
+            System.err.println("Error refunding " + transactionId + " for " + order.getCustomerEmail() + ": " + refundException.getMessage());
+        }
     }
 }
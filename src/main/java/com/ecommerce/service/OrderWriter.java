@@ -0,0 +1,203 @@
+package com.ecommerce.service;
+
+import com.ecommerce.model.Order;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+// Group commit for paid orders. Instead of every request saving its order in a transaction of
+// its own, requests hand their orders to one writer thread, which saves all orders that arrive
+// within a short window in one transaction, deducts their stock with one update per product,
+// and completes every caller together. At high request rates this pays one commit per group
+// instead of one per order.
+//
+// The window starts with the first order of a group and is a hard cap on the added latency: a
+// lone order is written as soon as the window ends, or right away once max-batch orders are
+// waiting. Groups are written through OrderGroupSaver: if the group's transaction fails, its
+// orders are written one transaction each, so only the order at fault fails.
+
+@Component
+public class OrderWriter {
+
+    private final OrderGroupSaver orderGroupSaver;
+    private final boolean enabled;
+    private final long windowNanos;
+    private final int maxBatch;
+    private final BlockingQueue<PendingWrite> queue;
+    private final LongAdder groupCount = new LongAdder();
+    private final LongAdder writtenCount = new LongAdder();
+    private volatile boolean running;
+    private Thread writer;
+
+    @Autowired
+    public OrderWriter(OrderGroupSaver orderGroupSaver,
+                       @Value("${orders.group-commit.enabled:false}") boolean enabled,
+                       @Value("${orders.group-commit.window:500us}") Duration window,
+                       @Value("${orders.group-commit.max-batch:64}") int maxBatch,
+                       @Value("${orders.group-commit.queue-capacity:4096}") int queueCapacity) {
+        this.orderGroupSaver = orderGroupSaver;
+        this.enabled = enabled;
+        this.windowNanos = window.toNanos();
+        this.maxBatch = maxBatch;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        writer = new Thread(this::run, "order-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Write what is already queued, then stop
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (writer != null) {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        }
+        // Orders queued while the writer was stopping
+        PendingWrite pendingWrite;
+        while ((pendingWrite = queue.poll()) != null) {
+            pendingWrite.result.completeExceptionally(new IllegalStateException("Order writer is shut down"));
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+
+    // Queue a paid order to be saved with its stock deducted. Blocks while the queue is full.
+
+    // @param order the order, with status already set
+    // @param reservation the order's stock reservation, committed once the order is saved
+    // @return completes with the saved order, or exceptionally if saving or deducting failed
+
+    public CompletableFuture<Order> write(Order order, ReservationBatch reservation) {
+        if (!running) {
+            throw new IllegalStateException("Order writer is not running");
+        }
+        PendingWrite pendingWrite = new PendingWrite(order, reservation);
+        try {
+            queue.put(pendingWrite);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing order", e);
+        }
+        // stop() may have drained the queue after the check above; if the order is still queued,
+        // nobody else will take it
+        if (!running && queue.remove(pendingWrite)) {
+            pendingWrite.result.completeExceptionally(new IllegalStateException("Order writer is shut down"));
+        }
+        return pendingWrite.result;
+    }
+
+    // Groups written, and orders written; their ratio is the average group size.
+    public long getGroupCount() {
+        return groupCount.sum();
+    }
+
+    public long getWrittenCount() {
+        return writtenCount.sum();
+    }
+
+    private void run() {
+        List<PendingWrite> group = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                collect(group, System.nanoTime() + windowNanos);
+                writeGroup(group);
+            } catch (InterruptedException e) {
+                running = false;
+                try {
+                    writeGroup(group);
+                } catch (RuntimeException failure) {
+                    failAll(group, failure);
+                }
+            } catch (RuntimeException e) {
+                failAll(group, e);
+            } finally {
+                group.clear();
+            }
+        }
+    }
+
+    // Never leave a caller waiting, whatever went wrong
+    private static void failAll(List<PendingWrite> group, RuntimeException failure) {
+        for (PendingWrite pendingWrite : group) {
+            pendingWrite.result.completeExceptionally(failure);
+        }
+    }
+
+    // Fill the group with orders arriving before the deadline, up to maxBatch
+    private void collect(List<PendingWrite> group, long deadline) throws InterruptedException {
+        while (group.size() < maxBatch) {
+            queue.drainTo(group, maxBatch - group.size());
+            long remaining = deadline - System.nanoTime();
+            if (group.size() >= maxBatch || remaining <= 0) {
+                return;
+            }
+            PendingWrite next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            group.add(next);
+        }
+    }
+
+    // Package-private so tests can write a group without the writer thread.
+    void writeGroup(List<PendingWrite> group) {
+        if (group.isEmpty()) {
+            return;
+        }
+        groupCount.increment();
+        List<Order> orders = group.stream().map(pendingWrite -> pendingWrite.order).collect(Collectors.toList());
+        List<ReservationBatch> reservations = group.stream().map(pendingWrite -> pendingWrite.reservation).collect(Collectors.toList());
+        List<OrderGroupSaver.SaveResult> results = orderGroupSaver.saveAll(orders, reservations);
+        for (OrderGroupSaver.SaveResult result : results) {
+            if (result.isSaved()) {
+                writtenCount.increment();
+            }
+        }
+        for (int i = 0; i < group.size(); i++) {
+            OrderGroupSaver.SaveResult result = results.get(i);
+            if (result.isSaved()) {
+                group.get(i).result.complete(result.getOrder());
+            } else {
+                group.get(i).result.completeExceptionally(result.getFailure());
+            }
+        }
+    }
+
+    static final class PendingWrite {
+        final Order order;
+        final ReservationBatch reservation;
+        final CompletableFuture<Order> result = new CompletableFuture<>();
+
+        PendingWrite(Order order, ReservationBatch reservation) {
+            this.order = order;
+            this.reservation = reservation;
+        }
+    }
+}
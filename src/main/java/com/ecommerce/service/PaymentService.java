@@ -1,16 +1,27 @@
 package com.ecommerce.service;
 
 import com.ecommerce.exception.PaymentFailedException;
+import com.ecommerce.model.Money;
 import org.springframework.stereotype.Service;
-import java.math.BigDecimal;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
 
 // Mock payment service for simulating payment processing.
 
 @Service
 public class PaymentService {
 
-    private final Random random = new Random();
+    private final Random random;
+    private final AtomicLong nextTransaction = new AtomicLong();
+
+    public PaymentService() {
+        this(new Random());
+    }
+
+    // Package-private so tests can decide which payments fail.
+    PaymentService(Random random) {
+        this.random = random;
+    }
 
     
     // Process payment for the given amount.
@@ -21,13 +32,9 @@ public class PaymentService {
     // @return payment transaction ID
     // @throws PaymentFailedException if payment fails
     
-    public String processPayment(BigDecimal amount, String customerEmail) {
+    public String processPayment(Money amount, String customerEmail) {
         // Simulate payment processing delay
-        try {
-            Thread.sleep(100);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
+        simulateRoundTrip();
 
         // Simulate payment failure (20% chance)
         if (random.nextDouble() < 0.2) {
@@ -35,6 +42,26 @@ public class PaymentService {
         }
 
         // Generate mock transaction ID
-        return "TXN-" + System.currentTimeMillis();
+        return "TXN-" + System.currentTimeMillis() + "-" + nextTransaction.incrementAndGet();
+    }
+
+
+    // Refund a payment taken for an order that could not be completed afterwards.
+
+    // @param transactionId the ID returned by processPayment
+    // @param amount the amount to give back
+    // @param customerEmail customer email for payment processing
+
+    public void refundPayment(String transactionId, Money amount, String customerEmail) {
+        // Like payments, refunds are only simulated; callers report a failed refund themselves
+        simulateRoundTrip();
+    }
+
+    private static void simulateRoundTrip() {
+        try {
+            Thread.sleep(100);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,251 @@
+package com.ecommerce.service;
+
+import com.ecommerce.model.Money;
+import com.ecommerce.model.Product;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+// Read-through cache of products in front of ProductRepository.
+//
+// Entries are immutable snapshots; every read hands out a fresh Product, so callers can never
+// change what other threads see. Entries expire after the TTL and the oldest ones are evicted
+// once the cache is full.
+//
+// Stock changes under the cache, so whoever writes stock invalidates the product. Every
+// invalidation bumps a per-stripe generation, and a load only fills the cache if no invalidation
+// of its stripe happened while it was reading; otherwise a slow load could put back stock that
+// was already deducted.
+
+@Component
+public class ProductCache {
+
+    private static final int STRIPES = 64;
+
+    private final ConcurrentHashMap<Long, Entry> entries = new ConcurrentHashMap<>();
+    // Insertion order for eviction; may hold entries that were already replaced or removed
+    private final ConcurrentLinkedQueue<Entry> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLongArray generations = new AtomicLongArray(STRIPES);
+    private final int maxSize;
+    private final long ttlMillis;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    @Autowired
+    public ProductCache(@Value("${inventory.product-cache.max-size:10000}") int maxSize,
+                        @Value("${inventory.product-cache.ttl:10m}") Duration ttl) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttl.toMillis();
+    }
+
+
+    // Get a product, loading it on a miss.
+
+    // @param productId the product ID
+    // @param loader loads the product from the database
+    // @return a copy of the product, or empty if it doesn't exist
+
+    public Optional<Product> get(Long productId, Function<Long, Optional<Product>> loader) {
+        Product cached = lookup(productId);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        long generation = generation(productId);
+        Optional<Product> loaded = loader.apply(productId);
+        loaded.ifPresent(product -> put(product, generation));
+        return loaded.map(ProductCache::copy);
+    }
+
+
+    // Get several products, loading all misses with one call.
+
+    // @param productIds the product IDs
+    // @param loader loads the missing products from the database
+    // @return copies of the products that exist, keyed by ID
+
+    public Map<Long, Product> getAll(Collection<Long> productIds, Function<Set<Long>, Iterable<Product>> loader) {
+        Map<Long, Product> products = new HashMap<>();
+        Set<Long> missing = new LinkedHashSet<>();
+        for (Long productId : productIds) {
+            Product cached = lookup(productId);
+            if (cached != null) {
+                products.put(productId, cached);
+            } else {
+                missing.add(productId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            Map<Long, Long> generationsBefore = new HashMap<>();
+            for (Long productId : missing) {
+                generationsBefore.put(productId, generation(productId));
+            }
+            for (Product product : loader.apply(missing)) {
+                Long generation = generationsBefore.get(product.getId());
+                if (generation != null) {
+                    put(product, generation);
+                }
+                products.put(product.getId(), copy(product));
+            }
+        }
+        return products;
+    }
+
+
+    // Drop a product whose stock (or anything else) changed in the database. Inside a
+    // transaction the product is dropped again after completion, since until then other
+    // connections still read, and may cache, the old row.
+
+    // @param productId the product ID
+
+    public void invalidate(Long productId) {
+        evict(productId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(productId);
+                }
+            });
+        }
+    }
+
+    // Drop every product, e.g. after a bulk update.
+    public void invalidateAll() {
+        for (int i = 0; i < STRIPES; i++) {
+            generations.incrementAndGet(i);
+        }
+        invalidations.add(entries.size());
+        entries.clear();
+        insertionOrder.clear();
+        queued.set(0);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    // Entries dropped because the cache was full.
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    // Entries dropped because they outlived the TTL.
+    public long getExpirationCount() {
+        return expirations.sum();
+    }
+
+    // Entries dropped because the product changed.
+    public long getInvalidationCount() {
+        return invalidations.sum();
+    }
+
+    private Product lookup(Long productId) {
+        Entry entry = entries.get(productId);
+        if (entry != null && entry.expiresAt <= System.currentTimeMillis()) {
+            if (entries.remove(productId, entry)) {
+                expirations.increment();
+            }
+            entry = null;
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.toProduct();
+    }
+
+    private void put(Product product, long generation) {
+        Entry entry = new Entry(product, System.currentTimeMillis() + ttlMillis);
+        entries.put(product.getId(), entry);
+        // An invalidation raced with the load: the row we read may already be stale
+        if (generation(product.getId()) != generation) {
+            entries.remove(product.getId(), entry);
+            return;
+        }
+        insertionOrder.add(entry);
+        queued.incrementAndGet();
+        evictOverflow();
+    }
+
+    private void evictOverflow() {
+        // The queue may also fill up with stale entries, so it is bounded as well
+        while (entries.size() > maxSize || queued.get() > 2 * maxSize) {
+            Entry oldest = insertionOrder.poll();
+            if (oldest == null) {
+                return;
+            }
+            queued.decrementAndGet();
+            if (entries.remove(oldest.id, oldest)) {
+                evictions.increment();
+            }
+        }
+    }
+
+    private void evict(Long productId) {
+        generations.incrementAndGet(stripe(productId));
+        if (entries.remove(productId) != null) {
+            invalidations.increment();
+        }
+    }
+
+    private long generation(Long productId) {
+        return generations.get(stripe(productId));
+    }
+
+    private static int stripe(Long productId) {
+        return (int) ((productId * 0x9E3779B97F4A7C15L) >>> 58);
+    }
+
+    private static Product copy(Product product) {
+        return new Product(product.getId(), product.getName(), product.getPrice(), product.getStockQuantity());
+    }
+
+    private static final class Entry {
+        final Long id;
+        final String name;
+        final Money price;
+        final Integer stockQuantity;
+        final long expiresAt;
+
+        Entry(Product product, long expiresAt) {
+            this.id = product.getId();
+            this.name = product.getName();
+            this.price = product.getPrice();
+            this.stockQuantity = product.getStockQuantity();
+            this.expiresAt = expiresAt;
+        }
+
+        Product toProduct() {
+            return new Product(id, name, price, stockQuantity);
+        }
+    }
+}
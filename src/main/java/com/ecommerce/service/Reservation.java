@@ -0,0 +1,55 @@
+package com.ecommerce.service;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.ToString;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Stock held for an in-flight order until it is committed, released or expires.
+// A reservation leaves ACTIVE exactly once, so whichever of commit, release or the
+// expiry sweeper gets there first is the only one that gives the stock back.
+
+@Getter
+@ToString
+public class Reservation {
+
+    private final long id;
+    private final Long productId;
+    private final int quantity;
+    private final String owner;
+    private final long deadline; // epoch millis
+    private final boolean pooled; // taken from a hot product's striped pool
+
+    @Getter(AccessLevel.NONE)
+    private final AtomicReference<Status> status = new AtomicReference<>(Status.ACTIVE);
+
+    public enum Status {
+        ACTIVE, COMMITTED, RELEASED, EXPIRED
+    }
+
+    public Reservation(long id, Long productId, int quantity, String owner, long deadline) {
+        this(id, productId, quantity, owner, deadline, false);
+    }
+
+    Reservation(long id, Long productId, int quantity, String owner, long deadline, boolean pooled) {
+        this.id = id;
+        this.productId = productId;
+        this.quantity = quantity;
+        this.owner = owner;
+        this.deadline = deadline;
+        this.pooled = pooled;
+    }
+
+    public Status getStatus() {
+        return status.get();
+    }
+
+    public boolean isActive() {
+        return status.get() == Status.ACTIVE;
+    }
+
+    // Move out of ACTIVE. Returns false if the reservation already reached a final state.
+    boolean complete(Status target) {
+        return status.compareAndSet(Status.ACTIVE, target);
+    }
+}
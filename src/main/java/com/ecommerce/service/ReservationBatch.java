@@ -0,0 +1,29 @@
+package com.ecommerce.service;
+
+import com.ecommerce.model.Product;
+import lombok.Getter;
+import java.util.List;
+import java.util.Map;
+
+// All stock reservations of one order, taken together by InventoryService.reserveAll.
+// Holds one reservation per distinct product, ordered by product ID, plus the products
+// loaded to make them, so callers can price the order without another query.
+// Deduct or release it as a whole through InventoryService.
+
+@Getter
+public class ReservationBatch {
+
+    private final String owner;
+    private final List<Reservation> reservations;
+    private final Map<Long, Product> products;
+
+    public ReservationBatch(String owner, List<Reservation> reservations, Map<Long, Product> products) {
+        this.owner = owner;
+        this.reservations = List.copyOf(reservations);
+        this.products = Map.copyOf(products);
+    }
+
+    public Product getProduct(Long productId) {
+        return products.get(productId);
+    }
+}
@@ -0,0 +1,424 @@
+package com.ecommerce.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+// Append-only journal of reservation changes, so in-flight reservations survive a restart.
+//
+// Records go to memory-mapped segment files. The request thread only copies a few dozen
+// bytes into the mapping; a background thread forces dirty pages to disk every
+// fsync-interval (group fsync), so a crash loses at most that window.
+// When a segment fills up, writing moves on to a new segment and the background thread
+// writes a snapshot of all live reservations, after which older segments are deleted.
+// On startup the latest snapshot is loaded and the segments after it are replayed.
+//
+// Record layout (big-endian):
+//   int length | int crc32c(type..end) | byte type | long reservationId
+//   RESERVE only: long productId | int quantity | long deadline | short ownerLength | owner (UTF-8)
+// A zero length marks the end of a segment; a bad checksum marks a torn tail.
+// Owners are cut to MAX_OWNER_BYTES, in records and snapshots alike.
+
+@Component
+@ConditionalOnProperty(name = "inventory.journal.enabled", havingValue = "true")
+public class ReservationJournal {
+
+    static final byte RESERVE = 1;
+    static final byte RELEASE = 2;
+    static final byte COMMIT = 3;
+    static final byte EXPIRE = 4;
+
+    private static final int HEADER_SIZE = 8;
+    private static final int COMPLETION_SIZE = HEADER_SIZE + 1 + 8;
+    private static final int RESERVE_FIXED_SIZE = COMPLETION_SIZE + 8 + 4 + 8 + 2;
+    private static final int MAX_OWNER_BYTES = 1024;
+    private static final int SNAPSHOT_MAGIC = 0x52534E50; // "RSNP"
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long fsyncIntervalMillis;
+
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final byte[] scratch = new byte[RESERVE_FIXED_SIZE + MAX_OWNER_BYTES];
+    private final ByteBuffer scratchBuffer = ByteBuffer.wrap(scratch);
+    private final CRC32C crc = new CRC32C();
+    private MappedByteBuffer segment;
+    private long segmentSeq;
+    private long lastReservationId;
+    private int position;
+    private volatile int forcedPosition;
+
+    // Segments that were rolled over but not forced yet, and the snapshot they are waiting for
+    private final ConcurrentLinkedQueue<MappedByteBuffer> retiredSegments = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pendingSnapshotSeq = new AtomicLong(-1);
+    private volatile Supplier<Collection<Reservation>> snapshotSource;
+    private ScheduledExecutorService flusher;
+
+    @Autowired
+    public ReservationJournal(@Value("${inventory.journal.dir:data/journal}") Path directory,
+                              @Value("${inventory.journal.segment-size:67108864}") int segmentSize,
+                              @Value("${inventory.journal.fsync-interval:10ms}") Duration fsyncInterval) {
+        if (segmentSize < RESERVE_FIXED_SIZE + MAX_OWNER_BYTES + 4) {
+            throw new IllegalArgumentException("Journal segment size too small: " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.fsyncIntervalMillis = Math.max(1, fsyncInterval.toMillis());
+    }
+
+
+    // Rebuild the live reservations from the latest snapshot plus the journal tail, then open a
+    // fresh segment for writing and start the background flusher. Called once by the ledger
+    // before it takes any reservation.
+
+    // @param source supplies the live reservations whenever a snapshot is due
+    // @return the reservations that were still active when the journal was last written
+
+    public List<Reservation> recover(Supplier<Collection<Reservation>> source) {
+        try {
+            Files.createDirectories(directory);
+            Map<Long, Reservation> live = new LinkedHashMap<>();
+            long snapshotSeq = loadLatestSnapshot(live);
+            long lastSeq = snapshotSeq;
+            for (Path file : listFiles("journal-", ".log")) {
+                long seq = sequenceOf(file);
+                if (seq >= snapshotSeq) {
+                    replay(file, live);
+                }
+                lastSeq = Math.max(lastSeq, seq);
+            }
+
+            this.snapshotSource = source;
+            openSegment(lastSeq + 1);
+            // Compact right away so the next restart starts from this state
+            writeSnapshot(segmentSeq, live.values(), lastReservationId);
+
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "reservation-journal-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flush, fsyncIntervalMillis, fsyncIntervalMillis, TimeUnit.MILLISECONDS);
+            return new ArrayList<>(live.values());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to recover reservation journal in " + directory, e);
+        }
+    }
+
+    // Highest reservation ID the journal has seen, so IDs are not handed out twice across restarts.
+    public long getLastReservationId() {
+        appendLock.lock();
+        try {
+            return lastReservationId;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    public void recordReserve(Reservation reservation) {
+        byte[] owner = ownerBytes(reservation);
+        int length = RESERVE_FIXED_SIZE + owner.length;
+
+        appendLock.lock();
+        try {
+            scratchBuffer.clear();
+            scratchBuffer.position(HEADER_SIZE);
+            lastReservationId = Math.max(lastReservationId, reservation.getId());
+            scratchBuffer.put(RESERVE)
+                    .putLong(reservation.getId())
+                    .putLong(reservation.getProductId())
+                    .putInt(reservation.getQuantity())
+                    .putLong(reservation.getDeadline())
+                    .putShort((short) owner.length)
+                    .put(owner);
+            append(length);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    public void recordCompletion(Reservation reservation, Reservation.Status status) {
+        byte type = switch (status) {
+            case COMMITTED -> COMMIT;
+            case RELEASED -> RELEASE;
+            case EXPIRED -> EXPIRE;
+            case ACTIVE -> throw new IllegalArgumentException("Not a final status: " + status);
+        };
+
+        appendLock.lock();
+        try {
+            scratchBuffer.clear();
+            scratchBuffer.position(HEADER_SIZE);
+            scratchBuffer.put(type).putLong(reservation.getId());
+            append(COMPLETION_SIZE);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // Write a final snapshot and stop the flusher.
+    @PreDestroy
+    public void close() {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdownNow();
+        appendLock.lock();
+        try {
+            segment.force();
+            openSegment(segmentSeq + 1);
+            pendingSnapshotSeq.set(segmentSeq);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            appendLock.unlock();
+        }
+        flush();
+    }
+
+    // Stop the flusher without the final snapshot close() writes, like a crash. For tests.
+    void abandon() throws InterruptedException {
+        flusher.shutdownNow();
+        flusher.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    // Must be called with appendLock held and the record body in scratch[HEADER_SIZE, length).
+    private void append(int length) {
+        if (position + length + 4 > segmentSize) {
+            rollOver();
+        }
+        crc.reset();
+        crc.update(scratch, HEADER_SIZE, length - HEADER_SIZE);
+        scratchBuffer.putInt(4, (int) crc.getValue());
+        scratchBuffer.putInt(0, length);
+        segment.put(position, scratch, 0, length);
+        position += length;
+    }
+
+    private void rollOver() {
+        try {
+            retiredSegments.add(segment);
+            openSegment(segmentSeq + 1);
+            // Everything before the new segment is covered once the snapshot is written
+            pendingSnapshotSeq.set(segmentSeq);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to roll over reservation journal", e);
+        }
+    }
+
+    private void openSegment(long seq) throws IOException {
+        Path file = directory.resolve(String.format("journal-%016d.log", seq));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        segmentSeq = seq;
+        position = 0;
+        forcedPosition = 0;
+    }
+
+    // Runs on the flusher thread: group fsync, then any snapshot a rollover asked for.
+    private void flush() {
+        try {
+            MappedByteBuffer retired;
+            while ((retired = retiredSegments.poll()) != null) {
+                retired.force();
+            }
+            MappedByteBuffer current;
+            int written;
+            appendLock.lock();
+            try {
+                current = segment;
+                written = position;
+            } finally {
+                appendLock.unlock();
+            }
+            if (written != forcedPosition) {
+                current.force();
+                forcedPosition = written;
+            }
+
+            long snapshotSeq = pendingSnapshotSeq.get();
+            if (snapshotSeq >= 0 && snapshotSource != null) {
+                long lastId;
+                appendLock.lock();
+                try {
+                    lastId = lastReservationId;
+                } finally {
+                    appendLock.unlock();
+                }
+                writeSnapshot(snapshotSeq, snapshotSource.get(), lastId);
+                // A rollover during the snapshot asked for a newer one; leave that for the next flush
+                pendingSnapshotSeq.compareAndSet(snapshotSeq, -1);
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Reservation journal flush failed: " + e.getMessage());
+        }
+    }
+
+    private static byte[] ownerBytes(Reservation reservation) {
+        if (reservation.getOwner() == null) {
+            return new byte[0];
+        }
+        byte[] owner = reservation.getOwner().getBytes(StandardCharsets.UTF_8);
+        return owner.length > MAX_OWNER_BYTES ? Arrays.copyOf(owner, MAX_OWNER_BYTES) : owner;
+    }
+
+    // The snapshot for seq holds every reservation that is live once all segments before seq
+    // are applied, so those segments and older snapshots can go.
+    private void writeSnapshot(long seq, Collection<Reservation> reservations, long lastId) throws IOException {
+        Path target = directory.resolve(String.format("snapshot-%016d.bin", seq));
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        List<Reservation> live = new ArrayList<>(reservations);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(lastId);
+            out.writeInt(live.size());
+            for (Reservation reservation : live) {
+                out.writeLong(reservation.getId());
+                out.writeLong(reservation.getProductId());
+                out.writeInt(reservation.getQuantity());
+                out.writeLong(reservation.getDeadline());
+                byte[] owner = ownerBytes(reservation);
+                out.writeShort(owner.length);
+                out.write(owner);
+            }
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        for (Path file : listFiles("journal-", ".log")) {
+            if (sequenceOf(file) < seq) {
+                Files.deleteIfExists(file);
+            }
+        }
+        for (Path file : listFiles("snapshot-", ".bin")) {
+            if (sequenceOf(file) < seq) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    // Load the newest readable snapshot into live and return its sequence number, or 0.
+    private long loadLatestSnapshot(Map<Long, Reservation> live) throws IOException {
+        List<Path> snapshots = listFiles("snapshot-", ".bin");
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            Path file = snapshots.get(i);
+            Map<Long, Reservation> loaded = new LinkedHashMap<>();
+            long lastId;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                if (in.readInt() != SNAPSHOT_MAGIC) {
+                    continue;
+                }
+                lastId = in.readLong();
+                int count = in.readInt();
+                for (int n = 0; n < count; n++) {
+                    long reservationId = in.readLong();
+                    Long productId = in.readLong();
+                    int quantity = in.readInt();
+                    long deadline = in.readLong();
+                    byte[] owner = new byte[in.readUnsignedShort()];
+                    in.readFully(owner);
+                    loaded.put(reservationId, new Reservation(reservationId, productId, quantity,
+                            new String(owner, StandardCharsets.UTF_8), deadline));
+                }
+                if (in.readInt() != SNAPSHOT_MAGIC) {
+                    continue;
+                }
+            } catch (IOException e) {
+                // Incomplete snapshot; fall back to the one before
+                continue;
+            }
+            live.putAll(loaded);
+            lastReservationId = lastId;
+            return sequenceOf(file);
+        }
+        return 0;
+    }
+
+    private void replay(Path file, Map<Long, Reservation> live) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        CRC32C check = new CRC32C();
+        while (buffer.remaining() >= COMPLETION_SIZE) {
+            int start = buffer.position();
+            int length = buffer.getInt(start);
+            if (length < COMPLETION_SIZE || start + length > buffer.limit()) {
+                return; // end of segment or torn tail
+            }
+            check.reset();
+            check.update(buffer.array(), start + HEADER_SIZE, length - HEADER_SIZE);
+            if ((int) check.getValue() != buffer.getInt(start + 4)) {
+                return; // torn tail
+            }
+            buffer.position(start + HEADER_SIZE);
+            byte type = buffer.get();
+            long reservationId = buffer.getLong();
+            lastReservationId = Math.max(lastReservationId, reservationId);
+            if (type == RESERVE) {
+                Long productId = buffer.getLong();
+                int quantity = buffer.getInt();
+                long deadline = buffer.getLong();
+                byte[] owner = new byte[buffer.getShort()];
+                buffer.get(owner);
+                live.put(reservationId, new Reservation(reservationId, productId, quantity,
+                        new String(owner, StandardCharsets.UTF_8), deadline));
+            } else {
+                live.remove(reservationId);
+            }
+            buffer.position(start + length);
+        }
+    }
+
+    private List<Path> listFiles(String prefix, String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> {
+                        String name = file.getFileName().toString();
+                        return name.startsWith(prefix) && name.endsWith(suffix);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long sequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(name.indexOf('-') + 1, name.lastIndexOf('.')));
+    }
+}
@@ -0,0 +1,340 @@
+package com.ecommerce.service;
+
+import com.ecommerce.exception.OutOfStockException;
+import com.ecommerce.model.Product;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+// Ledger of stock reserved for in-flight orders.
+// The reserved quantity per product lives in a ReservedStock engine picked by inventory.engine:
+// "atomic" (the default) keeps a compare-and-set counter per product, "ring-buffer" queues every
+// change to the single thread owning the product's shard.
+// Each reservation carries a deadline; a timing-wheel sweeper gives the stock of abandoned
+// reservations back, so a thread dying mid-checkout cannot strand stock forever.
+//
+// Hot products (flash sales) can be switched to a striped pool: the product's available
+// stock is reserved in one go on its counter and spread over sub-buckets, and orders then
+// reserve from those buckets instead of all spinning on the same counter.
+//
+// With the reservation journal enabled, every reservation and its completion is appended to
+// the journal after the in-memory change, and the ledger is rebuilt from it on startup.
+
+@Component
+public class ReservationLedger {
+
+    private static final int WHEEL_SIZE = 512;
+
+    private final ReservedStock reserved;
+    private final ConcurrentHashMap<Long, StripedStockCounter> hotPools = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Reservation> active = new ConcurrentHashMap<>();
+    private final AtomicLong nextReservationId = new AtomicLong();
+    private final LongAdder expiredCount = new LongAdder();
+    // Told the product ID whenever a product's reserved quantity changes
+    private final List<Consumer<Long>> changeListeners = new CopyOnWriteArrayList<>();
+
+    // Request threads hand new reservations to the sweeper through this queue,
+    // so the wheel itself is only ever touched by the sweeper thread.
+    private final ConcurrentLinkedQueue<Reservation> pendingExpiry = new ConcurrentLinkedQueue<>();
+    private final TimingWheel<Reservation> expiryWheel;
+    private final long ttlMillis;
+    private final long tickMillis;
+    private final ReservationJournal journal; // null unless inventory.journal.enabled
+    private ScheduledExecutorService sweeper;
+
+    public ReservationLedger(Duration ttl, Duration tick) {
+        this(ttl, tick, Optional.empty(), new AtomicReservedStock());
+    }
+
+    @Autowired
+    public ReservationLedger(@Value("${inventory.reservation.ttl:5m}") Duration ttl,
+                             @Value("${inventory.reservation.tick:100ms}") Duration tick,
+                             Optional<ReservationJournal> journal,
+                             @Value("${inventory.engine:atomic}") String engine,
+                             @Value("${inventory.engine.shards:4}") int shards,
+                             @Value("${inventory.engine.ring-size:1024}") int ringSize) {
+        this(ttl, tick, journal, ReservedStock.create(engine, shards, ringSize));
+    }
+
+    ReservationLedger(Duration ttl, Duration tick, Optional<ReservationJournal> journal, ReservedStock reserved) {
+        this.ttlMillis = ttl.toMillis();
+        this.tickMillis = tick.toMillis();
+        this.expiryWheel = new TimingWheel<>(tickMillis, WHEEL_SIZE, System.currentTimeMillis());
+        this.journal = journal.orElse(null);
+        this.reserved = reserved;
+    }
+
+    @PostConstruct
+    public void startSweeper() {
+        if (journal != null) {
+            restore(journal.recover(() -> new ArrayList<>(active.values())));
+        }
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "reservation-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleAtFixedRate(() -> expireDue(System.currentTimeMillis()),
+                tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stopSweeper() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+        reserved.close();
+    }
+
+
+    // Reserve stock for a product if enough of it is still unreserved.
+
+    // @param product the product, with its current on-hand stock
+    // @param quantity quantity to reserve
+    // @param owner who the stock is held for, e.g. the customer placing the order
+    // @return the new reservation
+    // @throws OutOfStockException if insufficient stock available
+
+    public Reservation reserve(Product product, int quantity, String owner) {
+        StripedStockCounter pool = hotPools.get(product.getId());
+        boolean pooled = pool != null && pool.take(quantity);
+        if (!pooled) {
+            if (pool != null && !pool.isRetired()) {
+                throw new OutOfStockException(product.getName(), pool.sum(), quantity);
+            }
+            // Plain product, or a pool that was switched off in the meantime
+            int available = reserved.reserve(product.getId(), quantity, product.getStockQuantity());
+            if (available < quantity) {
+                throw new OutOfStockException(product.getName(), available, quantity);
+            }
+        }
+
+        Reservation reservation = new Reservation(nextReservationId.incrementAndGet(), product.getId(),
+                quantity, owner, System.currentTimeMillis() + ttlMillis, pooled);
+        active.put(reservation.getId(), reservation);
+        if (journal != null) {
+            journal.recordReserve(reservation);
+        }
+        pendingExpiry.add(reservation);
+        notifyChanged(product.getId());
+        return reservation;
+    }
+
+
+    // Reserve several products all-or-nothing. Products are taken in ascending ID order, so
+    // overlapping carts always acquire in the same order; if any product is short, the ones
+    // already reserved are released before the exception propagates.
+
+    // @param quantities quantity per product ID, iterated in ascending ID order
+    // @param products the products, keyed by ID
+    // @param owner who the stock is held for
+    // @return one reservation per product, in ascending ID order
+    // @throws OutOfStockException if any product has insufficient stock
+
+    public List<Reservation> reserveAll(SortedMap<Long, Integer> quantities, Map<Long, Product> products,
+                                        String owner) {
+        List<Reservation> reservations = new ArrayList<>(quantities.size());
+        try {
+            for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+                reservations.add(reserve(products.get(entry.getKey()), entry.getValue(), owner));
+            }
+        } catch (RuntimeException e) {
+            for (Reservation reservation : reservations) {
+                release(reservation);
+            }
+            throw e;
+        }
+        return reservations;
+    }
+
+
+    // Give reserved stock back, e.g. when the order failed.
+
+    // @param reservation the reservation to release
+    // @return false if the reservation was already committed, released or expired
+
+    public boolean release(Reservation reservation) {
+        return complete(reservation, Reservation.Status.RELEASED);
+    }
+
+
+    // Mark reserved stock as sold. The caller is responsible for deducting it from the product.
+
+    // @param reservation the reservation to commit
+    // @return false if the reservation was already committed, released or expired
+
+    public boolean commit(Reservation reservation) {
+        return complete(reservation, Reservation.Status.COMMITTED);
+    }
+
+
+    // Get the quantity currently reserved for a product.
+
+    // @param productId the product ID
+    // @return reserved quantity
+
+    public int getReserved(Long productId) {
+        int count = reserved.get(productId);
+        // Units still sitting in a hot pool are held by nobody
+        StripedStockCounter pool = hotPools.get(productId);
+        return pool == null ? count : count - pool.sum();
+    }
+
+
+    // Switch a product to hot mode: its currently available stock moves into a striped pool.
+    // Meant for products about to get a burst of orders on the same row.
+
+    // @param product the product, with its current on-hand stock
+    // @param buckets number of sub-buckets to spread the stock over, at least 1
+    // @return false if the product already was in hot mode
+    // @throws IllegalArgumentException if buckets is out of range
+
+    public boolean enableHotMode(Product product, int buckets) {
+        Long productId = product.getId();
+        // Reserve everything that is left on the plain counter on behalf of the pool
+        int pooledStock = reserved.reserveRemaining(productId, product.getStockQuantity());
+        StripedStockCounter pool;
+        try {
+            pool = new StripedStockCounter(buckets, pooledStock);
+        } catch (RuntimeException e) {
+            // Nothing else would ever release the stock reserved for the pool
+            reserved.add(productId, -pooledStock);
+            throw e;
+        }
+        if (hotPools.putIfAbsent(productId, pool) != null) {
+            reserved.add(productId, -pooledStock);
+            return false;
+        }
+        return true;
+    }
+
+
+    // Switch a product back to a single counter. Unreserved pooled stock becomes available again.
+
+    // @param productId the product ID
+    // @return false if the product was not in hot mode
+
+    public boolean disableHotMode(Long productId) {
+        StripedStockCounter pool = hotPools.remove(productId);
+        if (pool == null) {
+            return false;
+        }
+        pool.retire();
+        returnToCounter(productId, pool);
+        return true;
+    }
+
+    // Register a listener for changes in reserved stock. Listeners run on the thread making the
+    // change, which may be a request thread or the sweeper, so they must be quick.
+    public void addChangeListener(Consumer<Long> listener) {
+        changeListeners.add(listener);
+    }
+
+    public boolean isHot(Long productId) {
+        return hotPools.containsKey(productId);
+    }
+
+    // Number of sub-buckets of a hot product's pool, or 0 if the product is not in hot mode.
+    public int getHotBucketCount(Long productId) {
+        StripedStockCounter pool = hotPools.get(productId);
+        return pool == null ? 0 : pool.bucketCount();
+    }
+
+    public Reservation getReservation(long reservationId) {
+        return active.get(reservationId);
+    }
+
+    public int getActiveCount() {
+        return active.size();
+    }
+
+    // Number of reservations given back by the sweeper because nobody committed or released them.
+    public long getExpiredCount() {
+        return expiredCount.sum();
+    }
+
+    // Called on every sweeper tick; package-private so tests can drive time.
+    void expireDue(long now) {
+        Reservation reservation;
+        while ((reservation = pendingExpiry.poll()) != null) {
+            if (reservation.isActive() && !expiryWheel.schedule(reservation, reservation.getDeadline())) {
+                expire(reservation);
+            }
+        }
+        expiryWheel.advanceTo(now, this::expire);
+    }
+
+    private void expire(Reservation reservation) {
+        if (complete(reservation, Reservation.Status.EXPIRED)) {
+            expiredCount.increment();
+        }
+    }
+
+    private boolean complete(Reservation reservation, Reservation.Status status) {
+        if (!reservation.complete(status)) {
+            return false;
+        }
+        // Leave the active set before journaling, so a snapshot never holds a reservation
+        // whose completion record lives in a segment the snapshot replaces
+        active.remove(reservation.getId());
+        if (journal != null) {
+            journal.recordCompletion(reservation, status);
+        }
+        Long productId = reservation.getProductId();
+        StripedStockCounter pool = hotPools.get(productId);
+        if (reservation.isPooled() && status != Reservation.Status.COMMITTED && pool != null) {
+            // Unsold pooled stock goes back into the pool, not onto the counter
+            pool.put(reservation.getQuantity());
+            if (pool.isRetired()) {
+                returnToCounter(productId, pool);
+            }
+        } else {
+            // Sold stock leaves the counter, whether it was held directly or through the pool
+            reserved.add(productId, -reservation.getQuantity());
+        }
+        notifyChanged(productId);
+        return true;
+    }
+
+    private void notifyChanged(Long productId) {
+        for (Consumer<Long> listener : changeListeners) {
+            listener.accept(productId);
+        }
+    }
+
+    // Put recovered reservations back as plain (unpooled) reservations; hot pools are not journaled.
+    // Ones whose deadline passed while the service was down are expired on the first sweep.
+    private void restore(List<Reservation> recovered) {
+        for (Reservation reservation : recovered) {
+            reserved.add(reservation.getProductId(), reservation.getQuantity());
+            active.put(reservation.getId(), reservation);
+            pendingExpiry.add(reservation);
+        }
+        nextReservationId.set(journal.getLastReservationId());
+    }
+
+    // Drain a pool's units back onto the plain counter. Safe to repeat: each unit moves once.
+    private void returnToCounter(Long productId, StripedStockCounter pool) {
+        int drained = pool.drain();
+        if (drained > 0) {
+            reserved.add(productId, -drained);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.ecommerce.service;
+
+// Per-product count of reserved units behind ReservationLedger.
+// "atomic" keeps one compare-and-set counter per product, updated by the calling thread;
+// "ring-buffer" hands every update to the single thread owning the product's shard.
+
+interface ReservedStock {
+
+    // Reserve quantity if stockQuantity minus what is already reserved covers it.
+    // Returns the quantity that was available before; the reservation happened if that is >= quantity.
+    int reserve(Long productId, int quantity, int stockQuantity);
+
+    // Reserve whatever is still available and return how much that was.
+    int reserveRemaining(Long productId, int stockQuantity);
+
+    // Add to the reserved quantity; negative to give units back.
+    void add(Long productId, int delta);
+
+    int get(Long productId);
+
+    default void close() {
+    }
+
+    static ReservedStock create(String engine, int shards, int ringSize) {
+        return switch (engine) {
+            case "atomic" -> new AtomicReservedStock();
+            case "ring-buffer" -> new RingBufferReservedStock(shards, ringSize);
+            default -> throw new IllegalArgumentException("Unknown inventory.engine: " + engine);
+        };
+    }
+}
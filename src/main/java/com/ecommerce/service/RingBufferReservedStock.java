@@ -0,0 +1,298 @@
+package com.ecommerce.service;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Single-writer reserved counts. Products are spread over shards; each shard is owned by one
+// thread that alone changes the shard's counts, kept in primitive arrays with no locks and no
+// compare-and-set retries. Request threads write a command into a slot of the shard's
+// preallocated ring buffer and wait on a future for the owner's answer, so a hot product costs
+// one queued command per order instead of threads spinning on the same counter.
+//
+// Reads do not go through the ring: the owner publishes every count with release semantics
+// and get() reads it directly, so looking at available stock never waits behind orders.
+
+final class RingBufferReservedStock implements ReservedStock {
+
+    private static final int RESERVE = 0;
+    private static final int RESERVE_REMAINING = 1;
+    private static final int ADD = 2;
+
+    // Owner spins this many times on an empty ring before parking
+    private static final int SPINS_BEFORE_PARK = 1_000;
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final VarHandle KEYS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle VALUES = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private final Shard[] shards;
+
+    RingBufferReservedStock(int shardCount, int ringSize) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("inventory.engine.shards must be at least 1");
+        }
+        if (ringSize < 2 || Integer.bitCount(ringSize) != 1) {
+            throw new IllegalArgumentException("inventory.engine.ring-size must be a power of two");
+        }
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i, ringSize);
+        }
+    }
+
+    @Override
+    public int reserve(Long productId, int quantity, int stockQuantity) {
+        return submit(RESERVE, productId, quantity, stockQuantity);
+    }
+
+    @Override
+    public int reserveRemaining(Long productId, int stockQuantity) {
+        return submit(RESERVE_REMAINING, productId, 0, stockQuantity);
+    }
+
+    // Waits like the others, so the caller reads its own release in getReserved afterwards
+    @Override
+    public void add(Long productId, int delta) {
+        submit(ADD, productId, delta, 0);
+    }
+
+    @Override
+    public int get(Long productId) {
+        long hash = mix(productId);
+        return shard(hash).table.get(productId, hash);
+    }
+
+    @Override
+    public void close() {
+        for (Shard shard : shards) {
+            shard.close();
+        }
+    }
+
+    private int submit(int type, Long productId, int quantity, int stockQuantity) {
+        long hash = mix(productId);
+        return shard(hash).submit(type, productId, hash, quantity, stockQuantity).join();
+    }
+
+    private Shard shard(long hash) {
+        // High bits pick the shard, low bits the slot within the shard's table
+        return shards[(int) ((hash >>> 32) % shards.length)];
+    }
+
+    // MurmurHash3 finalizer: sequential IDs spread evenly over shards and slots
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private static final class Command {
+        // Sequence number of the command in this slot; the volatile write publishes the other fields
+        volatile long sequence = -1;
+        int type;
+        long productId;
+        long hash;
+        int quantity;
+        int stockQuantity;
+        CompletableFuture<Integer> result;
+    }
+
+    private static final class Shard implements Runnable {
+        private final Command[] ring;
+        private final int mask;
+        private final AtomicLong claimed = new AtomicLong(-1);
+        private final Thread owner;
+        // Next sequence the owner will apply; producers wait while the ring is a lap ahead of it
+        private volatile long consumed;
+        private volatile boolean sleeping;
+        private volatile boolean closed;
+        // Replaced when it grows; only the owner writes it
+        private volatile Table table = new Table(64);
+
+        Shard(int index, int ringSize) {
+            ring = new Command[ringSize];
+            for (int i = 0; i < ringSize; i++) {
+                ring[i] = new Command();
+            }
+            mask = ringSize - 1;
+            owner = new Thread(this, "inventory-engine-" + index);
+            owner.setDaemon(true);
+            owner.start();
+        }
+
+        CompletableFuture<Integer> submit(int type, long productId, long hash, int quantity, int stockQuantity) {
+            if (closed) {
+                throw new IllegalStateException("Inventory engine is shut down");
+            }
+            long sequence = claimed.incrementAndGet();
+            int spins = 0;
+            while (sequence - consumed >= ring.length) {
+                // Ring full: the owner is a whole lap behind
+                if (++spins < 100) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(1_000);
+                }
+            }
+            Command command = ring[(int) (sequence & mask)];
+            CompletableFuture<Integer> result = new CompletableFuture<>();
+            command.type = type;
+            command.productId = productId;
+            command.hash = hash;
+            command.quantity = quantity;
+            command.stockQuantity = stockQuantity;
+            command.result = result;
+            command.sequence = sequence;
+            // Read after publishing; the owner sets sleeping before its last look at the ring
+            if (sleeping) {
+                LockSupport.unpark(owner);
+            }
+            return result;
+        }
+
+        @Override
+        public void run() {
+            long next = 0;
+            int idle = 0;
+            while (true) {
+                Command command = ring[(int) (next & mask)];
+                if (command.sequence == next) {
+                    apply(command);
+                    consumed = ++next;
+                    idle = 0;
+                } else if (closed && claimed.get() < next) {
+                    // Shut down with no command claimed but not yet published
+                    return;
+                } else if (++idle < SPINS_BEFORE_PARK) {
+                    Thread.onSpinWait();
+                } else {
+                    sleeping = true;
+                    if (command.sequence != next && !(closed && claimed.get() < next)) {
+                        LockSupport.park(this);
+                    }
+                    sleeping = false;
+                    idle = 0;
+                }
+            }
+        }
+
+        private void apply(Command command) {
+            CompletableFuture<Integer> result = command.result;
+            command.result = null;
+            try {
+                int index = slot(command.productId, command.hash);
+                int current = table.values[index];
+                int answer;
+                switch (command.type) {
+                    case RESERVE -> {
+                        answer = command.stockQuantity - current;
+                        if (answer >= command.quantity) {
+                            table.set(index, current + command.quantity);
+                        }
+                    }
+                    case RESERVE_REMAINING -> {
+                        answer = Math.max(0, command.stockQuantity - current);
+                        table.set(index, current + answer);
+                    }
+                    default -> {
+                        answer = current + command.quantity;
+                        table.set(index, answer);
+                    }
+                }
+                result.complete(answer);
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        }
+
+        // Slot of the product in the current table, adding it (and growing the table) if missing
+        private int slot(long productId, long hash) {
+            int index = table.find(productId, hash);
+            if (index >= 0) {
+                return index;
+            }
+            if (table.size * 2 >= table.keys.length) {
+                table = table.grow();
+            }
+            return table.insert(productId, hash);
+        }
+
+        void close() {
+            closed = true;
+            LockSupport.unpark(owner);
+        }
+    }
+
+    // Open-addressing map from product ID to reserved count, kept at most half full.
+    // The owner is the only writer; other threads read through the acquire loads in get().
+    private static final class Table {
+        final long[] keys;
+        final int[] values;
+        final int mask;
+        int size;
+
+        Table(int capacity) {
+            keys = new long[capacity];
+            values = new int[capacity];
+            mask = capacity - 1;
+            Arrays.fill(keys, EMPTY);
+        }
+
+        int find(long productId, long hash) {
+            for (int index = (int) hash & mask; ; index = (index + 1) & mask) {
+                long key = keys[index];
+                if (key == productId) {
+                    return index;
+                }
+                if (key == EMPTY) {
+                    return -1;
+                }
+            }
+        }
+
+        int insert(long productId, long hash) {
+            int index = (int) hash & mask;
+            while (keys[index] != EMPTY) {
+                index = (index + 1) & mask;
+            }
+            // The value slot is already 0; publishing the key makes the product visible to get()
+            KEYS.setRelease(keys, index, productId);
+            size++;
+            return index;
+        }
+
+        void set(int index, int value) {
+            VALUES.setRelease(values, index, value);
+        }
+
+        int get(long productId, long hash) {
+            for (int index = (int) hash & mask; ; index = (index + 1) & mask) {
+                long key = (long) KEYS.getAcquire(keys, index);
+                if (key == productId) {
+                    return (int) VALUES.getAcquire(values, index);
+                }
+                if (key == EMPTY) {
+                    return 0;
+                }
+            }
+        }
+
+        // Only ever called by the owner; the copy is complete before the volatile table write
+        Table grow() {
+            Table grown = new Table(keys.length * 2);
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != EMPTY) {
+                    int index = grown.insert(keys[i], mix(keys[i]));
+                    grown.values[index] = values[i];
+                }
+            }
+            return grown;
+        }
+    }
+}
@@ -0,0 +1,400 @@
+package com.ecommerce.service;
+
+import com.ecommerce.dto.StockLevelEvent;
+import com.ecommerce.model.Product;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Pushes stock level changes to stream subscribers.
+//
+// Reserving, releasing, expiring and deducting stock only mark the product as changed. Once
+// per interval the flusher loads every changed product with one query and hands one event per
+// product to each interested subscriber, so a hot product emits at most one event per interval
+// however many orders hit it. Each subscriber keeps at most one pending event per product and
+// at most buffer-size pending events overall; when a slow subscriber's buffer is full, its
+// oldest pending event is dropped. Events are written by a small sender pool, so a slow
+// connection never holds up the flusher.
+//
+// A write to a stalled connection blocks its sender until the connection times out, which would
+// take that sender away from every other subscriber. So each interval the flusher also drops any
+// subscriber whose current write has taken longer than send-timeout: it stops receiving events,
+// its sender is interrupted, and the pool gets a stand-in thread until the blocked write returns.
+// The connection itself is only closed once that write returns, by its own sender: SseEmitter
+// completes under the same monitor as send, so closing it from the flusher would block the flusher
+// behind the stalled write.
+
+@Component
+public class StockLevelPublisher {
+
+    private final InventoryService inventoryService;
+    private final Set<Long> changed = ConcurrentHashMap.newKeySet();
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final LongAdder droppedEvents = new LongAdder();
+    private final LongAdder stalledSubscribers = new LongAdder();
+    private final long intervalMillis;
+    private final long timeoutMillis;
+    private final int bufferSize;
+    private final int senderThreads;
+    private final long sendTimeoutNanos;
+    private ScheduledExecutorService flusher;
+    private ThreadPoolExecutor senders;
+
+    @Autowired
+    public StockLevelPublisher(InventoryService inventoryService, ReservationLedger reservationLedger,
+                               @Value("${inventory.stream.interval:250ms}") Duration interval,
+                               @Value("${inventory.stream.timeout:30m}") Duration timeout,
+                               @Value("${inventory.stream.buffer-size:256}") int bufferSize,
+                               @Value("${inventory.stream.sender-threads:4}") int senderThreads,
+                               @Value("${inventory.stream.send-timeout:5s}") Duration sendTimeout) {
+        this.inventoryService = inventoryService;
+        this.intervalMillis = interval.toMillis();
+        this.timeoutMillis = timeout.toMillis();
+        this.bufferSize = bufferSize;
+        this.senderThreads = senderThreads;
+        this.sendTimeoutNanos = sendTimeout.toNanos();
+        reservationLedger.addChangeListener(this::markChanged);
+    }
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger senderCount = new AtomicInteger();
+        senders = new ThreadPoolExecutor(senderThreads, senderThreads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "stock-stream-sender-" + senderCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stock-stream-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(() -> {
+            dropStalled();
+            flush();
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (flusher != null) {
+            flusher.shutdownNow();
+            senders.shutdownNow();
+        }
+        for (Subscriber subscriber : subscribers) {
+            subscriber.close();
+        }
+    }
+
+
+    // Open a stream of stock level events. The current level of every requested product is
+    // sent first, then one event per changed product per interval.
+
+    // @param productIds products to follow; empty follows every product
+    // @return the emitter to return from the controller
+    // @throws ProductNotFoundException if a requested product doesn't exist
+
+    public SseEmitter subscribe(Collection<Long> productIds) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = register(productIds, new EmitterSink(emitter));
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(error -> subscriber.close());
+        return emitter;
+    }
+
+
+    // Note that a product's stock level changed. Cheap enough for the order path: nothing is
+    // recorded while nobody is subscribed. Inside a transaction the product is noted again after
+    // completion, since the new stock is only visible to the flusher once committed.
+
+    // @param productId the product ID
+
+    public void markChanged(Long productId) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        changed.add(productId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    changed.add(productId);
+                }
+            });
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    // Events dropped because a subscriber's buffer was full.
+    public long getDroppedCount() {
+        return droppedEvents.sum();
+    }
+
+    // Subscribers dropped because a write to them took longer than send-timeout.
+    public long getStalledCount() {
+        return stalledSubscribers.sum();
+    }
+
+    // Package-private so tests can subscribe without a servlet container.
+    Subscriber register(Collection<Long> productIds, Sink sink) {
+        Subscriber subscriber = new Subscriber(Set.copyOf(productIds), sink);
+        List<StockLevelEvent> current = productIds.isEmpty() ? List.of() : currentLevels(productIds);
+        subscribers.add(subscriber);
+        for (StockLevelEvent event : current) {
+            subscriber.offer(event);
+        }
+        return subscriber;
+    }
+
+    // Called once per interval; package-private so tests can drive it.
+    void flush() {
+        if (changed.isEmpty()) {
+            return;
+        }
+        List<Long> productIds = new ArrayList<>();
+        for (Iterator<Long> iterator = changed.iterator(); iterator.hasNext(); ) {
+            productIds.add(iterator.next());
+            iterator.remove();
+        }
+        try {
+            List<StockLevelEvent> events = currentLevels(productIds);
+            for (Subscriber subscriber : subscribers) {
+                for (StockLevelEvent event : events) {
+                    if (subscriber.follows(event.getProductId())) {
+                        subscriber.offer(event);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Stock stream flush failed: " + e.getMessage());
+        }
+    }
+
+    // Called once per interval; package-private so tests can drive it.
+    void dropStalled() {
+        long now = System.nanoTime();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.dropIfStalled(now);
+        }
+    }
+
+    // Grow or shrink the sender pool by one stand-in thread
+    private void resizeSenders(int delta) {
+        synchronized (senders) {
+            if (delta > 0) {
+                senders.setMaximumPoolSize(senders.getMaximumPoolSize() + delta);
+                senders.setCorePoolSize(senders.getCorePoolSize() + delta);
+            } else {
+                senders.setCorePoolSize(senders.getCorePoolSize() + delta);
+                senders.setMaximumPoolSize(senders.getMaximumPoolSize() + delta);
+            }
+        }
+    }
+
+    private List<StockLevelEvent> currentLevels(Collection<Long> productIds) {
+        Map<Long, Product> products = inventoryService.getProducts(productIds);
+        List<StockLevelEvent> events = new ArrayList<>(products.size());
+        for (Product product : products.values()) {
+            events.add(new StockLevelEvent(product.getId(), product.getStockQuantity(),
+                    inventoryService.getAvailableStock(product)));
+        }
+        return events;
+    }
+
+    // Where a subscriber's events are written to.
+    interface Sink {
+        void send(StockLevelEvent event) throws IOException;
+
+        void close();
+    }
+
+    private static final class EmitterSink implements Sink {
+        private final SseEmitter emitter;
+
+        EmitterSink(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        @Override
+        public void send(StockLevelEvent event) throws IOException {
+            emitter.send(SseEmitter.event().name("stock").data(event));
+        }
+
+        @Override
+        public void close() {
+            emitter.complete();
+        }
+    }
+
+    final class Subscriber {
+        private final Set<Long> productIds;
+        private final Sink sink;
+        private final ReentrantLock lock = new ReentrantLock();
+        // Latest pending event per product, oldest first
+        private final LinkedHashMap<Long, StockLevelEvent> pending = new LinkedHashMap<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        // The thread blocked in sink.send and since when; guarded by lock
+        private Thread sender;
+        private long sendStartedNanos;
+        private boolean stalled;
+        private volatile boolean closed;
+
+        Subscriber(Set<Long> productIds, Sink sink) {
+            this.productIds = productIds;
+            this.sink = sink;
+        }
+
+        boolean follows(Long productId) {
+            return productIds.isEmpty() || productIds.contains(productId);
+        }
+
+        void offer(StockLevelEvent event) {
+            lock.lock();
+            try {
+                // Re-inserting moves the product to the back, behind products that waited longer
+                pending.remove(event.getProductId());
+                pending.put(event.getProductId(), event);
+                if (pending.size() > bufferSize) {
+                    Iterator<StockLevelEvent> oldest = pending.values().iterator();
+                    oldest.next();
+                    oldest.remove();
+                    droppedEvents.increment();
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (draining.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                List<StockLevelEvent> batch = takePending();
+                if (batch.isEmpty()) {
+                    draining.set(false);
+                    // An event offered after takePending but before the reset would be stranded
+                    if (!hasPending() || !draining.compareAndSet(false, true)) {
+                        return;
+                    }
+                    continue;
+                }
+                try {
+                    for (StockLevelEvent event : batch) {
+                        send(event);
+                        if (closed) {
+                            return;
+                        }
+                    }
+                } catch (IOException | RuntimeException e) {
+                    // Client went away; a dropped subscriber's sink is already closed by send
+                    if (!closed) {
+                        close();
+                    }
+                    return;
+                }
+            }
+        }
+
+        private void send(StockLevelEvent event) throws IOException {
+            lock.lock();
+            try {
+                sender = Thread.currentThread();
+                sendStartedNanos = System.nanoTime();
+            } finally {
+                lock.unlock();
+            }
+            try {
+                sink.send(event);
+            } finally {
+                boolean dropped;
+                lock.lock();
+                try {
+                    sender = null;
+                    dropped = stalled;
+                    stalled = false;
+                } finally {
+                    lock.unlock();
+                }
+                if (dropped) {
+                    resizeSenders(-1);
+                    sink.close();
+                }
+            }
+        }
+
+        void dropIfStalled(long now) {
+            lock.lock();
+            try {
+                if (sender == null || stalled || now - sendStartedNanos < sendTimeoutNanos) {
+                    return;
+                }
+                stalled = true;
+                closed = true;
+                // Under the lock, so the sender cannot have moved on to another subscriber yet
+                sender.interrupt();
+            } finally {
+                lock.unlock();
+            }
+            // The sender closes the sink once its write returns
+            subscribers.remove(this);
+            resizeSenders(1);
+            stalledSubscribers.increment();
+        }
+
+        private List<StockLevelEvent> takePending() {
+            lock.lock();
+            try {
+                List<StockLevelEvent> batch = new ArrayList<>(pending.values());
+                pending.clear();
+                return batch;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private boolean hasPending() {
+            lock.lock();
+            try {
+                return !pending.isEmpty();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void close() {
+            closed = true;
+            subscribers.remove(this);
+            sink.close();
+        }
+    }
+}
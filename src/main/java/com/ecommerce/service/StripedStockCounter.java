@@ -0,0 +1,103 @@
+package com.ecommerce.service;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+// Available stock of one hot product, split across padded sub-buckets.
+// Each thread starts at its own bucket and only moves on to neighbouring buckets when that
+// one runs dry, so threads reserving the same product mostly touch different cache lines.
+// The sum over all buckets is exact whenever no take or put is in flight.
+
+final class StripedStockCounter {
+
+    // 16 ints = 64 bytes, so neighbouring buckets never share a cache line
+    private static final int PADDING = 16;
+
+    private final AtomicIntegerArray buckets;
+    private final int bucketCount;
+    private volatile boolean retired;
+
+    StripedStockCounter(int bucketCount, int initialStock) {
+        if (bucketCount < 1 || bucketCount > Integer.MAX_VALUE / PADDING) {
+            throw new IllegalArgumentException("bucketCount out of range: " + bucketCount);
+        }
+        this.bucketCount = bucketCount;
+        this.buckets = new AtomicIntegerArray(bucketCount * PADDING);
+        for (int i = 0; i < bucketCount; i++) {
+            int share = initialStock / bucketCount + (i < initialStock % bucketCount ? 1 : 0);
+            buckets.set(i * PADDING, share);
+        }
+    }
+
+    // Take quantity units, starting at the caller's home bucket and stealing from its
+    // neighbours. All-or-nothing: if the buckets cannot cover the quantity, whatever was
+    // taken is put back and false is returned.
+    boolean take(int quantity) {
+        int home = homeBucket();
+        int remaining = quantity;
+        for (int i = 0; i < bucketCount && remaining > 0; i++) {
+            remaining -= takeFrom((home + i) % bucketCount, remaining);
+        }
+        if (remaining > 0) {
+            put(quantity - remaining);
+            return false;
+        }
+        return true;
+    }
+
+    // Put units back into the caller's home bucket.
+    void put(int quantity) {
+        if (quantity > 0) {
+            buckets.addAndGet(homeBucket() * PADDING, quantity);
+        }
+    }
+
+    // Remove every unit from every bucket and return how many there were.
+    int drain() {
+        int drained = 0;
+        for (int i = 0; i < bucketCount; i++) {
+            drained += buckets.getAndSet(i * PADDING, 0);
+        }
+        return drained;
+    }
+
+    int sum() {
+        int sum = 0;
+        for (int i = 0; i < bucketCount; i++) {
+            sum += buckets.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    int bucketCount() {
+        return bucketCount;
+    }
+
+    boolean isRetired() {
+        return retired;
+    }
+
+    void retire() {
+        retired = true;
+    }
+
+    private int takeFrom(int bucket, int wanted) {
+        int index = bucket * PADDING;
+        while (true) {
+            int current = buckets.get(index);
+            if (current <= 0) {
+                return 0;
+            }
+            int taken = Math.min(current, wanted);
+            if (buckets.compareAndSet(index, current, current - taken)) {
+                return taken;
+            }
+        }
+    }
+
+    private int homeBucket() {
+        // Not Thread.getId(), deprecated in Java 21; the identity hash is stable per thread and
+        // works on 17 and 21 alike. Fibonacci hashing, then the high bits pick the bucket.
+        int hash = System.identityHashCode(Thread.currentThread()) * 0x9E3779B9;
+        return (int) (((hash & 0xFFFFFFFFL) * bucketCount) >>> 32);
+    }
+}
@@ -0,0 +1,136 @@
+package com.ecommerce.service;
+
+import java.util.ArrayDeque;
+import java.util.function.Consumer;
+
+// Hierarchical timing wheel (Varghese & Lauck) for deadline-driven callbacks.
+// Level 0 has wheelSize buckets of tickMillis each; every further level is created on
+// demand and covers wheelSize times the span of the level below. Advancing one tick
+// drains one bucket per level, so the cost of a tick does not depend on how many
+// entries are scheduled. Entries are never removed early: callers cancel lazily by
+// ignoring callbacks for items that are no longer relevant.
+// Not thread-safe; it is driven by a single sweeper thread.
+
+final class TimingWheel<T> {
+
+    private final long tickMillis;
+    private final int wheelSize;
+    private final long interval;
+    private final ArrayDeque<Entry<T>>[] buckets;
+    private final boolean root;
+    private long currentTime;
+    private TimingWheel<T> overflow;
+    private int size;
+
+    TimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        this(tickMillis, wheelSize, startMillis, true);
+    }
+
+    @SuppressWarnings("unchecked")
+    private TimingWheel(long tickMillis, int wheelSize, long startMillis, boolean root) {
+        if (tickMillis <= 0 || wheelSize <= 1) {
+            throw new IllegalArgumentException("tickMillis must be positive and wheelSize greater than 1");
+        }
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        this.interval = tickMillis * wheelSize;
+        this.buckets = new ArrayDeque[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            buckets[i] = new ArrayDeque<>();
+        }
+        this.root = root;
+        this.currentTime = startMillis - (startMillis % tickMillis);
+    }
+
+    // Schedule an item. Returns false if the deadline has already passed, in which case
+    // the caller should handle the item right away.
+    boolean schedule(T item, long deadline) {
+        if (!add(new Entry<>(item, deadline))) {
+            return false;
+        }
+        size++;
+        return true;
+    }
+
+    // Advance the wheel to the given time, handing every item whose deadline has passed
+    // to the callback.
+    void advanceTo(long now, Consumer<T> onExpired) {
+        while (now >= currentTime + tickMillis) {
+            long time = currentTime + tickMillis;
+            currentTime = time;
+            // Drain before cascading: entries pulled down from higher levels may land in
+            // this bucket again, now for one full rotation later.
+            drain(index(time / tickMillis), onExpired);
+            if (overflow != null) {
+                overflow.cascade(time, this, onExpired);
+            }
+        }
+    }
+
+    // Number of items still scheduled, including ones that will be ignored when they fire.
+    int size() {
+        return size;
+    }
+
+    private boolean add(Entry<T> entry) {
+        if (root) {
+            // Level 0 rounds deadlines up so nothing fires early. The bucket for the current
+            // tick has already been drained, so a full interval ahead is still free.
+            long slot = (entry.deadline + tickMillis - 1) / tickMillis;
+            long slotTime = slot * tickMillis;
+            if (slotTime <= currentTime) {
+                return false;
+            }
+            if (slotTime <= currentTime + interval) {
+                buckets[index(slot)].add(entry);
+                return true;
+            }
+        } else {
+            // Higher levels round down so entries cascade while the level below can hold them.
+            long slot = entry.deadline / tickMillis;
+            if (slot * tickMillis < currentTime + interval) {
+                buckets[index(slot)].add(entry);
+                return true;
+            }
+        }
+        if (overflow == null) {
+            overflow = new TimingWheel<>(interval, wheelSize, currentTime, false);
+        }
+        return overflow.add(entry);
+    }
+
+    private void cascade(long time, TimingWheel<T> rootWheel, Consumer<T> onExpired) {
+        long levelTime = time - (time % tickMillis);
+        if (levelTime <= currentTime) {
+            return;
+        }
+        currentTime = levelTime;
+        if (overflow != null) {
+            overflow.cascade(time, rootWheel, onExpired);
+        }
+        ArrayDeque<Entry<T>> bucket = buckets[index(levelTime / tickMillis)];
+        Entry<T> entry;
+        while ((entry = bucket.poll()) != null) {
+            if (!rootWheel.add(entry)) {
+                rootWheel.size--;
+                onExpired.accept(entry.item);
+            }
+        }
+    }
+
+    private void drain(int index, Consumer<T> onExpired) {
+        ArrayDeque<Entry<T>> bucket = buckets[index];
+        Entry<T> entry;
+        while ((entry = bucket.poll()) != null) {
+            size--;
+            onExpired.accept(entry.item);
+        }
+    }
+
+    private int index(long slot) {
+        return (int) (slot % wheelSize);
+    }
+
+    private record Entry<T>(T item, long deadline) {
+    }
+}
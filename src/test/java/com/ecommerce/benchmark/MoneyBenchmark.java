@@ -0,0 +1,77 @@
+package com.ecommerce.benchmark;
+
+import com.ecommerce.model.Money;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+// Pricing an order the way OrderService.buildOrder does, subtotal per line (price times
+// quantity) and their sum as the total, with BigDecimal as before and with Money. Subtotals
+// are kept, as they are on the order items. Run main() for time and, through the gc profiler,
+// bytes allocated per order (gc.alloc.rate.norm).
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyBenchmark {
+
+    private static final String[] PRICES = {"59.99", "29.99", "39.99", "399.99", "4.50"};
+
+    @Param({"1", "20"})
+    public int lines;
+
+    private BigDecimal[] decimalPrices;
+    private Money[] moneyPrices;
+    private int[] quantities;
+
+    @Setup
+    public void setUp() {
+        decimalPrices = new BigDecimal[lines];
+        moneyPrices = new Money[lines];
+        quantities = new int[lines];
+        for (int i = 0; i < lines; i++) {
+            decimalPrices[i] = new BigDecimal(PRICES[i % PRICES.length]);
+            moneyPrices[i] = Money.of(PRICES[i % PRICES.length]);
+            quantities[i] = i % 4 + 1;
+        }
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimal(Blackhole subtotals) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < lines; i++) {
+            BigDecimal subtotal = decimalPrices[i].multiply(BigDecimal.valueOf(quantities[i]));
+            subtotals.consume(subtotal);
+            total = total.add(subtotal);
+        }
+        return total;
+    }
+
+    @Benchmark
+    public Money money(Blackhole subtotals) {
+        Money total = Money.ZERO;
+        for (int i = 0; i < lines; i++) {
+            Money subtotal = moneyPrices[i].times(quantities[i]);
+            subtotals.consume(subtotal);
+            total = total.plus(subtotal);
+        }
+        return total;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(MoneyBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build();
+        new Runner(options).run();
+    }
+}
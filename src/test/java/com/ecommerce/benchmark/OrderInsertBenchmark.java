@@ -0,0 +1,137 @@
+package com.ecommerce.benchmark;
+
+import com.ecommerce.OrderlyApplication;
+import com.ecommerce.model.Money;
+import com.ecommerce.model.Order;
+import com.ecommerce.model.OrderItem;
+import com.ecommerce.repository.OrderRepository;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Cost of saving an order with its items through Hibernate, with JDBC batching off
+// (batch_size=0) and on. Sequence-generated IDs let Hibernate batch the item inserts. Every
+// statement execution (one database round trip, a whole batch counting once) is counted through
+// a DataSource wrapper and printed per order at the end of each trial: a 20-line order takes 21
+// executions unbatched and 2 batched, plus a sequence call every 50 IDs. Run main() for the
+// comparison.
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderInsertBenchmark {
+
+    @Param({"0", "50"})
+    public int batchSize;
+
+    @Param({"1", "20"})
+    public int lines;
+
+    private ConfigurableApplicationContext context;
+    private OrderRepository orderRepository;
+    private TransactionTemplate transactionTemplate;
+    private final AtomicLong executions = new AtomicLong();
+    private long orders;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(OrderlyApplication.class)
+                .web(WebApplicationType.NONE)
+                .initializers(applicationContext -> applicationContext.getBeanFactory().addBeanPostProcessor(
+                        new BeanPostProcessor() {
+                            @Override
+                            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                                return bean instanceof DataSource dataSource ? counting(dataSource) : bean;
+                            }
+                        }))
+                // As arguments, since these must override application.properties
+                .run("--spring.datasource.url=jdbc:h2:mem:order-insert-bench",
+                        "--spring.jpa.show-sql=false",
+                        "--spring.jpa.properties.hibernate.jdbc.batch_size=" + batchSize,
+                        "--logging.level.com.ecommerce=WARN",
+                        "--logging.level.org.springframework.web=WARN");
+        orderRepository = context.getBean(OrderRepository.class);
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+        // Leave out the statements run while starting up
+        executions.set(0);
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.out.printf("%n%d-line orders, batch_size=%d: %.2f statement executions per order%n",
+                lines, batchSize, (double) executions.get() / orders);
+        context.close();
+    }
+
+    @Benchmark
+    public Order saveOrder() {
+        Order order = new Order("Customer", "customer@example.com");
+        order.setStatus(Order.OrderStatus.COMPLETED);
+        for (int i = 0; i < lines; i++) {
+            Money price = Money.of("9.99");
+            order.addItem(new OrderItem(null, order, (long) (i % 3) + 1, "Product " + i, 1, price, price));
+        }
+        order.setTotalAmount(Money.of("9.99").times(lines));
+        orders++;
+        return transactionTemplate.execute(status -> orderRepository.save(order));
+    }
+
+    private DataSource counting(DataSource dataSource) {
+        return proxy(DataSource.class, dataSource, result ->
+                result instanceof Connection connection ? proxy(Connection.class, connection, statement ->
+                        statement instanceof Statement ? proxy(statementType(statement), statement, null) : statement)
+                        : result);
+    }
+
+    // Wrap target so every execute* call is counted; wrapResult, if given, wraps what other calls return
+    @SuppressWarnings("unchecked")
+    private <T> T proxy(Class<T> type, T target, java.util.function.UnaryOperator<Object> wrapResult) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (proxy, method, args) -> {
+            if (method.getName().startsWith("execute")) {
+                executions.incrementAndGet();
+            }
+            try {
+                Object result = method.invoke(target, args);
+                return wrapResult == null ? result : wrapResult.apply(result);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Class<T> statementType(T statement) {
+        if (statement instanceof java.sql.CallableStatement) {
+            return (Class<T>) java.sql.CallableStatement.class;
+        }
+        if (statement instanceof java.sql.PreparedStatement) {
+            return (Class<T>) java.sql.PreparedStatement.class;
+        }
+        return (Class<T>) Statement.class;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(OrderInsertBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
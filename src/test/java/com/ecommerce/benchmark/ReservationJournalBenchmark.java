@@ -0,0 +1,76 @@
+package com.ecommerce.benchmark;
+
+import com.ecommerce.service.Reservation;
+import com.ecommerce.service.ReservationJournal;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+// Latency of appending to the reservation journal, i.e. what journaling adds to every
+// reserve and every commit/release. Run main() for the latency distribution at 1 and 8 threads.
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReservationJournalBenchmark {
+
+    private Path directory;
+    private ReservationJournal journal;
+    private final AtomicLong nextId = new AtomicLong();
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("reservation-journal-bench");
+        journal = new ReservationJournal(directory, 64 * 1024 * 1024, Duration.ofMillis(10));
+        journal.recover(List::of);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        journal.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public void reserve() {
+        journal.recordReserve(new Reservation(nextId.incrementAndGet(), 1L, 1, "customer@example.com",
+                System.currentTimeMillis()));
+    }
+
+    @Benchmark
+    public void reserveAndRelease() {
+        Reservation reservation = new Reservation(nextId.incrementAndGet(), 1L, 1, "customer@example.com",
+                System.currentTimeMillis());
+        journal.recordReserve(reservation);
+        journal.recordCompletion(reservation, Reservation.Status.RELEASED);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : new int[] {1, 8}) {
+            Options options = new OptionsBuilder()
+                    .include(ReservationJournalBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
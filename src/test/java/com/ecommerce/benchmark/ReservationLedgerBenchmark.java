@@ -0,0 +1,94 @@
+package com.ecommerce.benchmark;
+
+import com.ecommerce.model.Money;
+import com.ecommerce.model.Product;
+import com.ecommerce.service.Reservation;
+import com.ecommerce.service.ReservationLedger;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Contention benchmark for ReservationLedger.
+// "hotProduct" has every thread reserving the same product, "hotProductPooled" does the same
+// with the product in hot mode (striped pool), "distinctProducts" gives each thread its own
+// product. Each runs against both inventory.engine settings. Run main() to measure throughput
+// from 1 to 64 threads.
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReservationLedgerBenchmark {
+
+    private static final int STOCK = Integer.MAX_VALUE;
+
+    @Param({"atomic", "ring-buffer"})
+    public String engine;
+
+    private ReservationLedger ledger;
+    private Product hotProduct;
+    private Product pooledProduct;
+    private final AtomicLong nextProductId = new AtomicLong();
+
+    @State(Scope.Thread)
+    public static class ThreadProduct {
+        Product product;
+
+        @Setup
+        public void setUp(ReservationLedgerBenchmark benchmark) {
+            product = new Product(benchmark.nextProductId.incrementAndGet(), "Product", Money.ofCents(100), STOCK);
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        ledger = new ReservationLedger(Duration.ofMinutes(5), Duration.ofMillis(100), Optional.empty(),
+                engine, 4, 1024);
+        ledger.startSweeper();
+        hotProduct = new Product(0L, "Hot product", Money.ofCents(100), STOCK);
+        pooledProduct = new Product(-1L, "Pooled product", Money.ofCents(100), STOCK);
+        ledger.enableHotMode(pooledProduct, Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown
+    public void tearDown() {
+        ledger.stopSweeper();
+    }
+
+    @Benchmark
+    public boolean hotProduct() {
+        Reservation reservation = ledger.reserve(hotProduct, 1, "benchmark");
+        return ledger.release(reservation);
+    }
+
+    @Benchmark
+    public boolean hotProductPooled() {
+        Reservation reservation = ledger.reserve(pooledProduct, 1, "benchmark");
+        return ledger.release(reservation);
+    }
+
+    @Benchmark
+    public boolean distinctProducts(ThreadProduct thread) {
+        Reservation reservation = ledger.reserve(thread.product, 1, "benchmark");
+        return ledger.release(reservation);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : new int[] {1, 2, 4, 8, 16, 32, 64}) {
+            Options options = new OptionsBuilder()
+                    .include(ReservationLedgerBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.ecommerce.benchmark;
+
+import com.ecommerce.OrderlyApplication;
+import com.ecommerce.dto.OrderItemRequest;
+import com.ecommerce.dto.OrderRequest;
+import com.ecommerce.model.Money;
+import com.ecommerce.model.Product;
+import com.ecommerce.repository.ProductRepository;
+import com.ecommerce.service.OrderPipeline;
+import com.ecommerce.service.OrderService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// How long OrderPipeline takes to finish a burst of asynchronous orders, with
+// spring.threads.virtual.enabled off and on, on a fixed 256 MB heap. Each burst goes through
+// OrderService.submitOrder, which reserves the stock and saves the order as PENDING. The
+// pipeline then takes the ~100 ms payment and completes the order (or cancels it when the
+// payment fails). With the flag off, the pipeline runs on 200 platform workers, Tomcat's
+// default server.tomcat.threads.max, so a burst drains in waves of 200. With it on, every
+// admitted order gets a virtual thread. The queue holds the whole burst, so no order is
+// turned away. The "true" case needs Java 21 (mvn -Pjava21). Run main() for bursts of 200 to
+// 10,000 orders.
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms256m", "-Xmx256m"})
+public class VirtualThreadBenchmark {
+
+    private static final int PLATFORM_WORKERS = 200;
+    // Orders are spread over this many products, so stock updates do not queue on one row
+    private static final int PRODUCTS = 100;
+
+    @Param({"false", "true"})
+    public boolean virtualThreads;
+
+    @Param({"200", "2000", "10000"})
+    public int concurrentOrders;
+
+    private ConfigurableApplicationContext context;
+    private OrderService orderService;
+    private OrderPipeline orderPipeline;
+    private final List<Long> productIds = new ArrayList<>();
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(OrderlyApplication.class)
+                .web(WebApplicationType.NONE)
+                // As arguments, since these must override application.properties
+                .run("--spring.datasource.url=jdbc:h2:mem:virtual-thread-bench",
+                        "--spring.jpa.show-sql=false",
+                        "--spring.threads.virtual.enabled=" + virtualThreads,
+                        "--orders.async.workers=" + PLATFORM_WORKERS,
+                        "--orders.async.queue-capacity=" + concurrentOrders,
+                        "--logging.level.com.ecommerce=WARN",
+                        "--logging.level.org.springframework.web=WARN");
+        orderService = context.getBean(OrderService.class);
+        orderPipeline = context.getBean(OrderPipeline.class);
+        ProductRepository productRepository = context.getBean(ProductRepository.class);
+        for (int i = 0; i < PRODUCTS; i++) {
+            Product product = productRepository.save(new Product(null, "Product " + i, Money.of("9.99"), 1_000_000));
+            productIds.add(product.getId());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public long burst() throws InterruptedException {
+        long finished = finishedCount();
+        for (int i = 0; i < concurrentOrders; i++) {
+            String customerEmail = "customer" + i + "@example.com";
+            orderService.submitOrder(new OrderRequest("Customer " + i, customerEmail,
+                    List.of(new OrderItemRequest(productIds.get(i % PRODUCTS), 1))));
+        }
+        // Completed or cancelled: one in five payments fails, after the full round trip
+        long target = finished + concurrentOrders;
+        while (finishedCount() < target) {
+            Thread.sleep(1);
+        }
+        return finishedCount();
+    }
+
+    private long finishedCount() {
+        return orderPipeline.getCompletedCount() + orderPipeline.getCancelledCount();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(VirtualThreadBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
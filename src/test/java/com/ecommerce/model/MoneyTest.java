@@ -0,0 +1,63 @@
+package com.ecommerce.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyTest {
+
+    @Test
+    void arithmetic_isExactInCents() {
+        Money total = Money.of("59.99").times(2).plus(Money.of("29.99"));
+
+        assertEquals(14997, total.getCents());
+        assertEquals(new BigDecimal("149.97"), total.toBigDecimal());
+        assertEquals("149.97", total.toString());
+    }
+
+    @Test
+    void of_convertsExactly() {
+        assertEquals(6000, Money.of(new BigDecimal("60")).getCents());
+        assertEquals(5990, Money.of(new BigDecimal("59.900")).getCents());
+        assertEquals(Money.of("0.10"), Money.of(new BigDecimal("0.1")));
+        assertSame(Money.ZERO, Money.of("0.00"));
+        assertThrows(ArithmeticException.class, () -> Money.of("59.999"));
+        assertThrows(ArithmeticException.class, () -> Money.of("1E+20"));
+    }
+
+    @Test
+    void overflow_throwsInsteadOfWrapping() {
+        Money max = Money.ofCents(Long.MAX_VALUE);
+
+        assertThrows(ArithmeticException.class, () -> max.plus(Money.ofCents(1)));
+        assertThrows(ArithmeticException.class, () -> max.times(2));
+    }
+
+    @Test
+    void toBigDecimal_alwaysHasTwoDecimals() {
+        assertEquals("60.00", Money.ofCents(6000).toBigDecimal().toString());
+        assertEquals("-0.05", Money.ofCents(-5).toString());
+        assertTrue(Money.ofCents(-5).isNegative());
+    }
+
+    @Test
+    void json_isADecimalNumber() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        assertEquals("59.99", objectMapper.writeValueAsString(Money.of("59.99")));
+        assertEquals(Money.of("59.99"), objectMapper.readValue("59.99", Money.class));
+        assertEquals(Money.of("59.99"), objectMapper.readValue("\"59.99\"", Money.class));
+    }
+
+    @Test
+    void converter_roundTripsThroughTheColumn() {
+        MoneyConverter converter = new MoneyConverter();
+
+        assertEquals(new BigDecimal("29.99"), converter.convertToDatabaseColumn(Money.of("29.99")));
+        assertEquals(Money.of("29.99"), converter.convertToEntityAttribute(new BigDecimal("29.99")));
+        assertNull(converter.convertToEntityAttribute(null));
+    }
+}
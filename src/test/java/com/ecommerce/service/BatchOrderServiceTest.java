@@ -0,0 +1,190 @@
+package com.ecommerce.service;
+
+import com.ecommerce.dto.BatchOrderResponse;
+import com.ecommerce.dto.BatchOrderResult;
+import com.ecommerce.dto.OrderItemRequest;
+import com.ecommerce.dto.OrderRequest;
+import com.ecommerce.exception.OutOfStockException;
+import com.ecommerce.exception.PaymentFailedException;
+import com.ecommerce.model.Money;
+import com.ecommerce.model.Order;
+import com.ecommerce.model.Product;
+import com.ecommerce.repository.OrderRepository;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class BatchOrderServiceTest {
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private com.ecommerce.repository.ProductRepository productRepository;
+
+    @Mock
+    private PaymentService paymentService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private ReservationLedger reservationLedger;
+    private InventoryService inventoryService;
+    private BatchOrderService batchOrderService;
+    private final AtomicLong nextOrderId = new AtomicLong();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        reservationLedger = new ReservationLedger(Duration.ofMinutes(5), Duration.ofMillis(100));
+        inventoryService = spy(new InventoryService(productRepository, reservationLedger,
+                new ProductCache(1000, Duration.ofMinutes(10))));
+        batchOrderService = batchOrderService(new TransactionTemplate(transactionManager));
+
+        when(productRepository.findAllById(any())).thenReturn(List.of(
+                new Product(1L, "Laptop", Money.of("59.99"), 10),
+                new Product(2L, "Mouse", Money.of("29.99"), 1)));
+        when(productRepository.decrementStock(anyLong(), anyInt())).thenReturn(1);
+        when(paymentService.processPayment(any(), any())).thenReturn("TXN-1");
+        when(orderRepository.saveAll(any())).thenAnswer(invocation -> {
+            Iterable<Order> orders = invocation.getArgument(0);
+            List<Order> saved = new ArrayList<>();
+            for (Order order : orders) {
+                order.setId(nextOrderId.incrementAndGet());
+                saved.add(order);
+            }
+            return saved;
+        });
+        when(orderRepository.save(any())).thenAnswer(invocation -> {
+            Order order = invocation.getArgument(0);
+            order.setId(nextOrderId.incrementAndGet());
+            return order;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        batchOrderService.stop();
+    }
+
+    private BatchOrderService batchOrderService(TransactionTemplate transactionTemplate) {
+        BatchOrderService service = new BatchOrderService(inventoryService, paymentService,
+                new OrderGroupSaver(orderRepository, inventoryService, transactionTemplate),
+                Validation.buildDefaultValidatorFactory().getValidator(), 4, false);
+        service.start();
+        return service;
+    }
+
+    @Test
+    void createOrders_reportsEachOrderOnItsOwn() {
+        doThrow(new PaymentFailedException()).when(paymentService).processPayment(any(), eq("declined@example.com"));
+
+        BatchOrderResponse response = batchOrderService.createOrders(List.of(
+                order("a@example.com", 1L, 2),
+                order("not-an-email", 1L, 1),
+                order("b@example.com", 2L, 5),
+                order("declined@example.com", 1L, 1),
+                order("c@example.com", 3L, 1)));
+
+        List<BatchOrderResult> results = response.getResults();
+        assertEquals(1, response.getCreated());
+        assertEquals(4, response.getFailed());
+        assertEquals(BatchOrderResult.Status.CREATED, results.get(0).getStatus());
+        assertEquals(Order.OrderStatus.COMPLETED.name(), results.get(0).getOrder().getStatus());
+        assertEquals(BatchOrderResult.Status.INVALID, results.get(1).getStatus());
+        assertTrue(results.get(1).getError().contains("customerEmail"));
+        assertEquals(BatchOrderResult.Status.OUT_OF_STOCK, results.get(2).getStatus());
+        assertEquals(BatchOrderResult.Status.PAYMENT_FAILED, results.get(3).getStatus());
+        assertEquals(BatchOrderResult.Status.PRODUCT_NOT_FOUND, results.get(4).getStatus());
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(i, results.get(i).getIndex());
+        }
+
+        // Only the created order still holds stock, and it is sold
+        assertEquals(0, reservationLedger.getActiveCount());
+        verify(productRepository, times(1)).decrementStock(1L, 2);
+    }
+
+    @Test
+    void createOrders_sharesProductLoadingAndTransaction() {
+        BatchOrderResponse response = batchOrderService.createOrders(List.of(
+                order("a@example.com", 1L, 2),
+                order("b@example.com", 1L, 3),
+                order("c@example.com", 2L, 1)));
+
+        assertEquals(3, response.getCreated());
+        verify(productRepository, times(1)).findAllById(any());
+        verify(transactionManager, times(1)).getTransaction(any());
+        verify(orderRepository, times(1)).saveAll(any());
+        verify(orderRepository, never()).save(any());
+        // One guarded update per product for the whole batch
+        verify(productRepository).decrementStock(1L, 5);
+        verify(productRepository).decrementStock(2L, 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void createOrders_sharedTransactionFails_retriesOrdersOneByOne() {
+        doThrow(new OutOfStockException("Laptop", 2, 5))
+                .when(inventoryService).deductStockAll(any(Collection.class));
+        doThrow(new OutOfStockException("Laptop", 2, 3))
+                .when(inventoryService).deductStock(argThat((ReservationBatch batch) -> "b@example.com".equals(batch.getOwner())));
+
+        BatchOrderResponse response = batchOrderService.createOrders(List.of(
+                order("a@example.com", 1L, 2),
+                order("b@example.com", 1L, 3)));
+
+        assertEquals(BatchOrderResult.Status.CREATED, response.getResults().get(0).getStatus());
+        assertEquals(BatchOrderResult.Status.OUT_OF_STOCK, response.getResults().get(1).getStatus());
+        verify(paymentService, times(1)).refundPayment(eq("TXN-1"), any(), eq("b@example.com"));
+        verify(paymentService, never()).refundPayment(any(), any(), eq("a@example.com"));
+        assertEquals(0, reservationLedger.getActiveCount());
+    }
+
+    @Test
+    void createOrders_insertFailsAtFlush_createsTheOtherOrders() {
+        OrderGroupSaverTest.FlushingTransactionManager flushingManager = new OrderGroupSaverTest.FlushingTransactionManager(
+                order -> "b@example.com".equals(order.getCustomerEmail()));
+        flushingManager.saving(orderRepository);
+        batchOrderService.stop();
+        batchOrderService = batchOrderService(new TransactionTemplate(flushingManager));
+
+        BatchOrderResponse response = batchOrderService.createOrders(List.of(
+                order("a@example.com", 1L, 2),
+                order("b@example.com", 1L, 3),
+                order("c@example.com", 2L, 1)));
+
+        assertEquals(2, response.getCreated());
+        assertEquals(BatchOrderResult.Status.CREATED, response.getResults().get(0).getStatus());
+        assertEquals(BatchOrderResult.Status.FAILED, response.getResults().get(1).getStatus());
+        assertEquals(BatchOrderResult.Status.CREATED, response.getResults().get(2).getStatus());
+        verify(paymentService, times(1)).refundPayment(eq("TXN-1"), any(), eq("b@example.com"));
+        // The group's deductions rolled back and each retry deducted again; the failed order's
+        // reservation was released rather than left consumed
+        verify(productRepository).decrementStock(1L, 5);
+        verify(productRepository).decrementStock(1L, 2);
+        verify(productRepository, times(2)).decrementStock(2L, 1);
+        assertEquals(0, reservationLedger.getActiveCount());
+    }
+
+    private static OrderRequest order(String customerEmail, Long productId, int quantity) {
+        return new OrderRequest("Customer", customerEmail, List.of(new OrderItemRequest(productId, quantity)));
+    }
+}
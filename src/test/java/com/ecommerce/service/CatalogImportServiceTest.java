@@ -0,0 +1,203 @@
+package com.ecommerce.service;
+
+import com.ecommerce.dto.ImportResponse;
+import com.ecommerce.exception.CatalogImportException;
+import com.ecommerce.model.Money;
+import com.ecommerce.model.Product;
+import com.ecommerce.repository.ProductRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CatalogImportServiceTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    private JdbcTemplate jdbcTemplate;
+    private ReservationLedger reservationLedger;
+    private ProductCache productCache;
+    private CatalogImportService catalogImportService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:import" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        // The schema Hibernate generates for Product
+        jdbcTemplate.execute("CREATE SEQUENCE products_seq START WITH 1 INCREMENT BY 50");
+        jdbcTemplate.execute("CREATE TABLE products (id BIGINT PRIMARY KEY, "
+                + "name VARCHAR(255) NOT NULL, price NUMERIC(10, 2) NOT NULL, stock_quantity INT NOT NULL)");
+        jdbcTemplate.update("INSERT INTO products (id, name, price, stock_quantity) "
+                + "VALUES (NEXT VALUE FOR products_seq, 'Laptop', 59.99, 10)");
+
+        reservationLedger = new ReservationLedger(Duration.ofMinutes(5), Duration.ofMillis(100));
+        productCache = new ProductCache(1000, Duration.ofMinutes(10));
+        InventoryService inventoryService = new InventoryService(productRepository, reservationLedger, productCache);
+        catalogImportService = new CatalogImportService(jdbcTemplate,
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)),
+                inventoryService, productCache, new ObjectMapper(), 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("SHUTDOWN");
+    }
+
+    @Test
+    void importCsv_upsertsAndInsertsInChunks() {
+        ImportResponse response = catalogImportService.importCsv(input(
+                "name,price,stockQuantity,id\n"
+                + "Laptop,59.99,40,1\n"
+                + "\"Cable, USB-C\",9.99,100,\n"
+                + "Monitor,199.00,5,\n"));
+
+        assertEquals(3, response.getRows());
+        assertEquals(2, response.getChunks());
+        assertEquals(3, count());
+        assertEquals(40, stockOf("Laptop"));
+        assertEquals(100, stockOf("Cable, USB-C"));
+    }
+
+    @Test
+    void importNdjson_explicitNewId_doesNotCollideWithGeneratedIds() {
+        catalogImportService.importNdjson(input(
+                "{\"id\": 5, \"name\": \"Mouse\", \"price\": 29.99, \"stockQuantity\": 50}\n"
+                + "\n"
+                + "{\"name\": \"Keyboard\", \"price\": 39.99, \"stockQuantity\": 25}\n"
+                + "{\"name\": \"Headset\", \"price\": 49.99, \"stockQuantity\": 5}\n"));
+
+        assertEquals(4, count());
+        assertEquals(50, stockOf("Mouse"));
+        Long headsetId = jdbcTemplate.queryForObject("SELECT id FROM products WHERE name = 'Headset'", Long.class);
+        assertTrue(headsetId > 5);
+    }
+
+    @Test
+    void importCsv_newProducts_takeIdBlocksFromTheSequence() {
+        catalogImportService.importCsv(input(
+                "name,price,stockQuantity\n"
+                + "Mouse,29.99,50\n"
+                + "Keyboard,39.99,25\n"));
+
+        // Laptop took the first block; both new products share the next one
+        assertEquals(51L, jdbcTemplate.queryForObject("SELECT id FROM products WHERE name = 'Mouse'", Long.class));
+        assertEquals(52L, jdbcTemplate.queryForObject("SELECT id FROM products WHERE name = 'Keyboard'", Long.class));
+    }
+
+    @Test
+    void importCsv_explicitIdBeyondSequence_movesSequencePastIt() {
+        catalogImportService.importCsv(input(
+                "id,name,price,stockQuantity\n"
+                + "500,Mouse,29.99,50\n"));
+
+        assertEquals(501L, jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR products_seq", Long.class));
+    }
+
+    @Test
+    void importCsv_badRow_keepsCommittedChunksAndReportsLine() {
+        CatalogImportException e = assertThrows(CatalogImportException.class,
+                () -> catalogImportService.importCsv(input(
+                        "name,price,stockQuantity\n"
+                        + "A,1.00,1\n"
+                        + "B,1.00,1\n"
+                        + "C,oops,1\n")));
+
+        assertEquals(2, e.getImportedRows());
+        assertTrue(e.getMessage().contains("line 4"));
+        assertEquals(3, count());
+    }
+
+    @Test
+    void importCsv_fractionOfACent_isRejectedNotRounded() {
+        CatalogImportException e = assertThrows(CatalogImportException.class,
+                () -> catalogImportService.importCsv(input("name,price,stockQuantity\nA,9.999,1\n")));
+
+        assertTrue(e.getMessage().contains("whole cents"));
+    }
+
+    @Test
+    void importNdjson_fractionOfACent_isRejected() {
+        assertThrows(CatalogImportException.class, () -> catalogImportService.importNdjson(input(
+                "{\"name\": \"A\", \"price\": 9.999, \"stockQuantity\": 1}\n")));
+    }
+
+    @Test
+    void importCsv_missingColumn_isRejected() {
+        assertThrows(CatalogImportException.class,
+                () -> catalogImportService.importCsv(input("name,stockQuantity\nA,1\n")));
+    }
+
+    @Test
+    void import_invalidatesCacheAndRefreshesHotPools() {
+        Product laptop = new Product(1L, "Laptop", Money.of("59.99"), 10);
+        when(productRepository.findById(1L)).thenReturn(Optional.of(laptop));
+        productCache.get(1L, productRepository::findById);
+        reservationLedger.enableHotMode(laptop, 4);
+        reservationLedger.reserve(laptop, 3, "owner");
+
+        laptop.setStockQuantity(40);
+        catalogImportService.importCsv(input("id,name,price,stockQuantity\n1,Laptop,59.99,40\n"));
+
+        assertEquals(0, productCache.size());
+        assertTrue(reservationLedger.isHot(1L));
+        assertEquals(4, reservationLedger.getHotBucketCount(1L));
+        assertEquals(3, reservationLedger.getReserved(1L));
+    }
+
+    @Test
+    void import_failsAfterAChunk_keepsCommittedProductsOutOfTheCache() {
+        Product laptop = new Product(1L, "Laptop", Money.of("59.99"), 10);
+        Product mouse = new Product(2L, "Mouse", Money.of("29.99"), 5);
+        when(productRepository.findById(1L)).thenReturn(Optional.of(laptop));
+        when(productRepository.findById(2L)).thenReturn(Optional.of(mouse));
+        productCache.get(1L, productRepository::findById);
+        productCache.get(2L, productRepository::findById);
+
+        assertThrows(CatalogImportException.class, () -> catalogImportService.importCsv(input(
+                "id,name,price,stockQuantity\n1,Laptop,59.99,40\n,Cable,9.99,100\n,Broken,-1,1\n")));
+
+        // The first chunk committed and its product was dropped; untouched products stay cached
+        assertEquals(1, productCache.size());
+        productCache.get(2L, productRepository::findById);
+        verify(productRepository, times(1)).findById(2L);
+    }
+
+    @Test
+    void splitCsvLine_handlesQuotes() {
+        assertEquals(List.of("a", "b, c", "say \"hi\"", ""),
+                CatalogImportService.splitCsvLine("a,\"b, c\",\"say \"\"hi\"\"\","));
+    }
+
+    private int count() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM products", Integer.class);
+    }
+
+    private int stockOf(String name) {
+        Map<String, Object> row = jdbcTemplate.queryForMap("SELECT stock_quantity FROM products WHERE name = ?", name);
+        return ((Number) row.get("STOCK_QUANTITY")).intValue();
+    }
+
+    private static InputStream input(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,174 @@
+package com.ecommerce.service;
+
+import com.ecommerce.exception.IdempotencyKeyException;
+import com.ecommerce.exception.PaymentFailedException;
+import com.ecommerce.model.IdempotencyRecord;
+import com.ecommerce.repository.IdempotencyRecordRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class IdempotencyServiceTest {
+
+    @Mock
+    private IdempotencyRecordRepository repository;
+
+    private IdempotencyService idempotencyService;
+    private AtomicInteger executions;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(repository.findById(anyString())).thenReturn(Optional.empty());
+        idempotencyService = new IdempotencyService(repository, new ObjectMapper(), 2,
+                Duration.ofHours(24), Duration.ofMinutes(10));
+        executions = new AtomicInteger();
+    }
+
+    @Test
+    void execute_retry_replaysStoredResponse() {
+        ResponseEntity<String> first = idempotencyService.execute("key-1", request(1), this::createOrder);
+        ResponseEntity<String> retry = idempotencyService.execute("key-1", request(1), this::createOrder);
+
+        assertEquals(1, executions.get());
+        assertEquals(HttpStatus.CREATED, retry.getStatusCode());
+        assertEquals(first.getBody(), retry.getBody());
+        assertEquals("/orders/1", retry.getHeaders().getLocation().toString());
+        assertNull(first.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        assertEquals("true", retry.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        assertEquals(1, idempotencyService.getReplayCount());
+        verify(repository, times(1)).save(any());
+    }
+
+    @Test
+    void execute_concurrentDuplicates_runOnce() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        Future<ResponseEntity<String>> first = executor.submit(() -> idempotencyService.execute("key-1", request(1), () -> {
+            started.countDown();
+            await(release);
+            return createOrder();
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<ResponseEntity<String>> duplicate1 = executor.submit(() -> idempotencyService.execute("key-1", request(1), this::createOrder));
+        Future<ResponseEntity<String>> duplicate2 = executor.submit(() -> idempotencyService.execute("key-1", request(1), this::createOrder));
+        release.countDown();
+
+        String body = first.get(5, TimeUnit.SECONDS).getBody();
+        assertEquals(body, duplicate1.get(5, TimeUnit.SECONDS).getBody());
+        assertEquals(body, duplicate2.get(5, TimeUnit.SECONDS).getBody());
+        assertEquals(1, executions.get());
+        assertEquals(0, idempotencyService.getInFlightCount());
+        executor.shutdown();
+    }
+
+    @Test
+    void execute_keyReusedForDifferentRequest_isRejected() {
+        idempotencyService.execute("key-1", request(1), this::createOrder);
+
+        assertThrows(IdempotencyKeyException.class,
+                () -> idempotencyService.execute("key-1", request(2), this::createOrder));
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void execute_invalidKey_isRejected() {
+        assertThrows(IdempotencyKeyException.class,
+                () -> idempotencyService.execute(" ", request(1), this::createOrder));
+        assertThrows(IdempotencyKeyException.class,
+                () -> idempotencyService.execute("k".repeat(256), request(1), this::createOrder));
+        assertEquals(0, executions.get());
+    }
+
+    @Test
+    void execute_failedRequest_isNotStored() {
+        assertThrows(PaymentFailedException.class, () -> idempotencyService.execute("key-1", request(1), () -> {
+            executions.incrementAndGet();
+            throw new PaymentFailedException();
+        }));
+
+        idempotencyService.execute("key-1", request(1), this::createOrder);
+
+        assertEquals(2, executions.get());
+        verify(repository, times(1)).save(any());
+    }
+
+    @Test
+    void execute_notInMemory_isReplayedFromTable() {
+        idempotencyService.execute("key-1", request(1), this::createOrder);
+        ArgumentCaptor<IdempotencyRecord> saved = ArgumentCaptor.forClass(IdempotencyRecord.class);
+        verify(repository).save(saved.capture());
+
+        // As after a restart: a fresh service with an empty cache, but the row is still there
+        IdempotencyService restarted = new IdempotencyService(repository, new ObjectMapper(), 2,
+                Duration.ofHours(24), Duration.ofMinutes(10));
+        when(repository.findById("key-1")).thenReturn(Optional.of(saved.getValue()));
+
+        ResponseEntity<String> retry = restarted.execute("key-1", request(1), this::createOrder);
+
+        assertEquals(1, executions.get());
+        assertEquals(HttpStatus.CREATED, retry.getStatusCode());
+        assertEquals(saved.getValue().getResponseBody(), retry.getBody());
+    }
+
+    @Test
+    void execute_expiredRecord_runsAgain() {
+        IdempotencyRecord expired = new IdempotencyRecord("key-1", "hash", 201, null, "{}",
+                LocalDateTime.now().minusMinutes(1));
+        when(repository.findById("key-1")).thenReturn(Optional.of(expired));
+
+        idempotencyService.execute("key-1", request(1), this::createOrder);
+
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void execute_cacheIsBounded() {
+        for (int i = 0; i < 5; i++) {
+            idempotencyService.execute("key-" + i, request(i), this::createOrder);
+        }
+
+        assertEquals(2, idempotencyService.getCachedCount());
+    }
+
+    private ResponseEntity<?> createOrder() {
+        int id = executions.incrementAndGet();
+        return ResponseEntity.created(URI.create("/orders/" + id)).body(Map.of("id", id, "status", "COMPLETED"));
+    }
+
+    private static Map<String, Object> request(int productId) {
+        return Map.of("productId", productId, "quantity", 1);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,18 +1,26 @@
 package com.ecommerce.service;
 
+import com.ecommerce.dto.OrderItemRequest;
 import com.ecommerce.exception.OutOfStockException;
 import com.ecommerce.exception.ProductNotFoundException;
+import com.ecommerce.exception.ReservationExpiredException;
 import com.ecommerce.model.Product;
 import com.ecommerce.repository.ProductRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 
 class InventoryServiceTest {
@@ -20,12 +28,16 @@ class InventoryServiceTest {
     @Mock
     private ProductRepository productRepository;
 
-    @InjectMocks
+    private ReservationLedger reservationLedger;
+
     private InventoryService inventoryService;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        reservationLedger = new ReservationLedger(Duration.ofMinutes(5), Duration.ofMillis(100));
+        inventoryService = new InventoryService(productRepository, reservationLedger,
+                new ProductCache(1000, Duration.ofMinutes(10)));
     }
 
     @Test
@@ -65,10 +77,12 @@ class InventoryServiceTest {
 
         when(productRepository.findById(1L)).thenReturn(Optional.of(product));
 
-        inventoryService.lockStock(1L, 5);
+        Reservation reservation = inventoryService.lockStock(1L, 5, "john@example.com");
 
-        // Verify that the stock is locked (internal state check is hard with mocks, 
-        // but we can check the subsequent behavior if needed)
+        assertEquals(5, reservationLedger.getReserved(1L));
+        assertEquals(5, reservation.getQuantity());
+        assertEquals("john@example.com", reservation.getOwner());
+        assertTrue(reservation.isActive());
     }
 
     @Test
@@ -79,14 +93,14 @@ class InventoryServiceTest {
 
         when(productRepository.findById(1L)).thenReturn(Optional.of(product));
 
-        assertThrows(OutOfStockException.class, () -> inventoryService.lockStock(1L, 15));
+        assertThrows(OutOfStockException.class, () -> inventoryService.lockStock(1L, 15, "owner"));
     }
 
     @Test
     void lockStock_productNotFound_throwsProductNotFoundException() {
         when(productRepository.findById(1L)).thenReturn(Optional.empty());
 
-        assertThrows(ProductNotFoundException.class, () -> inventoryService.lockStock(1L, 5));
+        assertThrows(ProductNotFoundException.class, () -> inventoryService.lockStock(1L, 5, "owner"));
     }
 
     @Test
@@ -94,20 +108,37 @@ class InventoryServiceTest {
         Product product = new Product();
         product.setId(1L);
         product.setStockQuantity(10);
+        Reservation reservation = reservationLedger.reserve(product, 5, "owner");
 
-        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+        when(productRepository.decrementStock(1L, 5)).thenReturn(1);
 
-        inventoryService.deductStock(1L, 5);
+        inventoryService.deductStock(reservation);
 
-        assertEquals(5, product.getStockQuantity());
-        verify(productRepository).save(product);
+        verify(productRepository).decrementStock(1L, 5);
+        verify(productRepository, never()).findById(anyLong());
+        verify(productRepository, never()).save(any());
+    }
+
+    @Test
+    void deductStock_insufficientStock_throwsOutOfStockException() {
+        Product product = new Product();
+        product.setId(1L);
+        product.setStockQuantity(3);
+
+        when(productRepository.decrementStock(1L, 5)).thenReturn(0);
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+
+        assertThrows(OutOfStockException.class,
+                () -> inventoryService.deductStock(new Reservation(1L, 1L, 5, "owner", Long.MAX_VALUE)));
     }
 
     @Test
     void deductStock_productNotFound_throwsProductNotFoundException() {
+        when(productRepository.decrementStock(1L, 5)).thenReturn(0);
         when(productRepository.findById(1L)).thenReturn(Optional.empty());
 
-        assertThrows(ProductNotFoundException.class, () -> inventoryService.deductStock(1L, 5));
+        assertThrows(ProductNotFoundException.class,
+                () -> inventoryService.deductStock(new Reservation(1L, 1L, 5, "owner", Long.MAX_VALUE)));
     }
 
     @Test
@@ -117,12 +148,12 @@ class InventoryServiceTest {
         product.setId(1L);
         product.setStockQuantity(10);
         when(productRepository.findById(1L)).thenReturn(Optional.of(product));
-        inventoryService.lockStock(1L, 5);
+        Reservation reservation = inventoryService.lockStock(1L, 5, "owner");
 
-        inventoryService.releaseLock(1L, 3);
+        inventoryService.releaseLock(reservation);
 
-        // Verify that the locked stock is released (internal state check is hard with mocks, 
-        // but we can check the subsequent behavior if needed)
+        assertEquals(0, reservationLedger.getReserved(1L));
+        assertEquals(Reservation.Status.RELEASED, reservation.getStatus());
     }
 
     @Test
@@ -137,6 +168,32 @@ class InventoryServiceTest {
         assertEquals(product, result);
     }
 
+    @Test
+    void getProduct_repeatedReads_hitDatabaseOnce() {
+        Product product = new Product(1L, "Laptop", null, 10);
+
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+
+        inventoryService.getProduct(1L);
+        inventoryService.getProduct(1L);
+
+        verify(productRepository, times(1)).findById(1L);
+    }
+
+    @Test
+    void deductStock_invalidatesCachedProduct() {
+        Product product = new Product(1L, "Laptop", null, 10);
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+        when(productRepository.decrementStock(1L, 4)).thenReturn(1);
+        Reservation reservation = inventoryService.lockStock(1L, 4, "owner");
+
+        inventoryService.deductStock(reservation);
+        product.setStockQuantity(6);
+
+        assertEquals(6, inventoryService.getProduct(1L).getStockQuantity());
+        verify(productRepository, times(2)).findById(1L);
+    }
+
     @Test
     void getProduct_productNotFound_throwsProductNotFoundException() {
         when(productRepository.findById(1L)).thenReturn(Optional.empty());
@@ -144,6 +201,158 @@ class InventoryServiceTest {
         assertThrows(ProductNotFoundException.class, () -> inventoryService.getProduct(1L));
     }
 
+    @Test
+    void getProducts_loadsAllInOneQuery() {
+        Product product1 = new Product();
+        product1.setId(1L);
+        Product product2 = new Product();
+        product2.setId(2L);
+
+        when(productRepository.findAllById(any())).thenReturn(List.of(product1, product2));
+
+        Map<Long, Product> result = inventoryService.getProducts(List.of(1L, 2L, 1L));
+
+        assertEquals(2, result.size());
+        assertEquals(product1, result.get(1L));
+        assertEquals(product2, result.get(2L));
+        verify(productRepository, times(1)).findAllById(any());
+        verify(productRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void getProducts_missingProduct_throwsProductNotFoundException() {
+        Product product1 = new Product();
+        product1.setId(1L);
+
+        when(productRepository.findAllById(any())).thenReturn(List.of(product1));
+
+        ProductNotFoundException e = assertThrows(ProductNotFoundException.class,
+                () -> inventoryService.getProducts(List.of(1L, 2L)));
+        assertEquals("Product not found with id: 2", e.getMessage());
+    }
+
+    @Test
+    void reserveAll_mergesLinesAndReservesInProductOrder() {
+        Product product1 = new Product(1L, "Laptop", null, 10);
+        Product product2 = new Product(2L, "Mouse", null, 10);
+
+        when(productRepository.findAllById(any())).thenReturn(List.of(product1, product2));
+
+        ReservationBatch batch = inventoryService.reserveAll(List.of(
+                new OrderItemRequest(2L, 1),
+                new OrderItemRequest(1L, 2),
+                new OrderItemRequest(2L, 3)), "owner");
+
+        assertEquals(2, batch.getReservations().size());
+        assertEquals(1L, batch.getReservations().get(0).getProductId());
+        assertEquals(2, batch.getReservations().get(0).getQuantity());
+        assertEquals(2L, batch.getReservations().get(1).getProductId());
+        assertEquals(4, batch.getReservations().get(1).getQuantity());
+        assertEquals(product2, batch.getProduct(2L));
+        assertEquals(4, reservationLedger.getReserved(2L));
+    }
+
+    @Test
+    void reserveAll_oneProductShort_reservesNothing() {
+        Product product1 = new Product(1L, "Laptop", null, 10);
+        Product product2 = new Product(2L, "Mouse", null, 1);
+
+        when(productRepository.findAllById(any())).thenReturn(List.of(product1, product2));
+
+        assertThrows(OutOfStockException.class, () -> inventoryService.reserveAll(List.of(
+                new OrderItemRequest(1L, 2),
+                new OrderItemRequest(2L, 3)), "owner"));
+
+        assertEquals(0, reservationLedger.getReserved(1L));
+        assertEquals(0, reservationLedger.getReserved(2L));
+        assertEquals(0, reservationLedger.getActiveCount());
+    }
+
+    @Test
+    void deductAndReleaseBatch_actOnEveryReservation() {
+        Product product1 = new Product(1L, "Laptop", null, 10);
+        Product product2 = new Product(2L, "Mouse", null, 10);
+
+        when(productRepository.findAllById(any())).thenReturn(List.of(product1, product2));
+        when(productRepository.decrementStock(anyLong(), anyInt())).thenReturn(1);
+
+        ReservationBatch sold = inventoryService.reserveAll(List.of(
+                new OrderItemRequest(1L, 2), new OrderItemRequest(2L, 1)), "owner");
+        ReservationBatch abandoned = inventoryService.reserveAll(List.of(
+                new OrderItemRequest(1L, 3), new OrderItemRequest(2L, 3)), "owner");
+
+        inventoryService.deductStock(sold);
+        inventoryService.releaseLock(abandoned);
+
+        verify(productRepository).decrementStock(1L, 2);
+        verify(productRepository).decrementStock(2L, 1);
+        assertEquals(0, reservationLedger.getReserved(1L));
+        assertEquals(0, reservationLedger.getReserved(2L));
+    }
+
+    @Test
+    void reserveAll_preloadedProducts_skipsDatabase() {
+        Product product1 = new Product(1L, "Laptop", null, 10);
+        Product product2 = new Product(2L, "Mouse", null, 10);
+        Map<Long, Product> products = Map.of(1L, product1, 2L, product2);
+
+        ReservationBatch batch = inventoryService.reserveAll(List.of(new OrderItemRequest(2L, 3)), "owner", products);
+
+        assertEquals(1, batch.getReservations().size());
+        assertEquals(product2, batch.getProduct(2L));
+        assertNull(batch.getProduct(1L));
+        assertThrows(ProductNotFoundException.class,
+                () -> inventoryService.reserveAll(List.of(new OrderItemRequest(3L, 1)), "owner", products));
+        verifyNoInteractions(productRepository);
+    }
+
+    @Test
+    void deductStockAll_oneUpdatePerProduct() {
+        Product product1 = new Product(1L, "Laptop", null, 10);
+        Product product2 = new Product(2L, "Mouse", null, 10);
+        Map<Long, Product> products = Map.of(1L, product1, 2L, product2);
+        when(productRepository.decrementStock(anyLong(), anyInt())).thenReturn(1);
+
+        ReservationBatch first = inventoryService.reserveAll(List.of(
+                new OrderItemRequest(1L, 2), new OrderItemRequest(2L, 1)), "a", products);
+        ReservationBatch second = inventoryService.reserveAll(List.of(new OrderItemRequest(1L, 3)), "b", products);
+
+        inventoryService.deductStockAll(List.of(first, second));
+
+        verify(productRepository).decrementStock(1L, 5);
+        verify(productRepository).decrementStock(2L, 1);
+        assertEquals(0, reservationLedger.getReserved(1L));
+        assertEquals(0, reservationLedger.getActiveCount());
+    }
+
+    @Test
+    void deductStockAll_productShort_commitsNothing() {
+        Product product1 = new Product(1L, "Laptop", null, 10);
+        Product product2 = new Product(2L, "Mouse", null, 10);
+        Map<Long, Product> products = Map.of(1L, product1, 2L, product2);
+        when(productRepository.decrementStock(1L, 2)).thenReturn(1);
+        when(productRepository.decrementStock(2L, 4)).thenReturn(0);
+        when(productRepository.findById(2L)).thenReturn(Optional.of(new Product(2L, "Mouse", null, 3)));
+
+        ReservationBatch batch = inventoryService.reserveAll(List.of(
+                new OrderItemRequest(1L, 2), new OrderItemRequest(2L, 4)), "owner", products);
+
+        assertThrows(OutOfStockException.class, () -> inventoryService.deductStockAll(List.of(batch)));
+        assertEquals(2, reservationLedger.getActiveCount());
+    }
+
+    @Test
+    void lockStock_loadedProduct_skipsDatabase() {
+        Product product = new Product();
+        product.setId(1L);
+        product.setStockQuantity(10);
+
+        inventoryService.lockStock(product, 4, "owner");
+
+        assertEquals(4, reservationLedger.getReserved(1L));
+        verifyNoInteractions(productRepository);
+    }
+
     @Test
     void isStockAvailable_withLockedStock_returnsTrue() {
         Product product = new Product();
@@ -152,7 +361,7 @@ class InventoryServiceTest {
 
         when(productRepository.findById(1L)).thenReturn(Optional.of(product));
 
-        inventoryService.lockStock(1L, 3);
+        inventoryService.lockStock(1L, 3, "owner");
 
         assertTrue(inventoryService.isStockAvailable(1L, 5));
     }
@@ -165,7 +374,7 @@ class InventoryServiceTest {
 
         when(productRepository.findById(1L)).thenReturn(Optional.of(product));
 
-        inventoryService.lockStock(1L, 3);
+        inventoryService.lockStock(1L, 3, "owner");
 
         assertFalse(inventoryService.isStockAvailable(1L, 8));
     }
@@ -178,35 +387,102 @@ class InventoryServiceTest {
 
         when(productRepository.findById(1L)).thenReturn(Optional.of(product));
 
-        inventoryService.lockStock(1L, 5);
-        inventoryService.deductStock(1L, 3);
+        when(productRepository.decrementStock(1L, 3)).thenReturn(1);
+
+        inventoryService.lockStock(1L, 2, "other");
+        Reservation reservation = inventoryService.lockStock(1L, 3, "owner");
+        inventoryService.deductStock(reservation);
 
-        assertEquals(7, product.getStockQuantity());
-        verify(productRepository).save(product);
-        // We cannot directly verify the internal lockedStock map with mocks, 
-        // but the logic should reduce the locked stock by the deducted quantity.
+        verify(productRepository).decrementStock(1L, 3);
+        assertEquals(2, reservationLedger.getReserved(1L));
+        assertEquals(Reservation.Status.COMMITTED, reservation.getStatus());
     }
 
      @Test
-    void releaseLock_moreThanLocked() {
+    void releaseLock_twice_releasesOnce() {
         // Lock some stock first
         Product product = new Product();
         product.setId(1L);
         product.setStockQuantity(10);
         when(productRepository.findById(1L)).thenReturn(Optional.of(product));
-        inventoryService.lockStock(1L, 3);
+        inventoryService.lockStock(1L, 2, "other");
+        Reservation reservation = inventoryService.lockStock(1L, 3, "owner");
 
-        inventoryService.releaseLock(1L, 5);
+        inventoryService.releaseLock(reservation);
+        inventoryService.releaseLock(reservation);
 
-        // Verify that the locked stock is fully released and not negative (internal state check is hard)
+        assertEquals(2, reservationLedger.getReserved(1L));
     }
 
      @Test
-    void releaseLock_whenNoStockLocked() {
-        // No stock locked initially
-        inventoryService.releaseLock(1L, 5);
+    void releaseLock_afterDeduct_keepsStockSold() {
+        Product product = new Product();
+        product.setId(1L);
+        product.setStockQuantity(10);
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+        when(productRepository.decrementStock(1L, 3)).thenReturn(1);
+        Reservation reservation = inventoryService.lockStock(1L, 3, "owner");
+        inventoryService.deductStock(reservation);
+
+        inventoryService.releaseLock(reservation);
 
-        // Verify that no error occurs and the locked stock remains 0 (internal state check is hard)
+        assertEquals(Reservation.Status.COMMITTED, reservation.getStatus());
+        assertEquals(0, reservationLedger.getReserved(1L));
     }
 
+    @Test
+    void deductStock_inactiveReservation_throwsReservationExpiredException() {
+        Product product = new Product();
+        product.setId(1L);
+        product.setStockQuantity(10);
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+        Reservation reservation = inventoryService.lockStock(1L, 3, "owner");
+        reservationLedger.release(reservation);
+
+        assertThrows(ReservationExpiredException.class, () -> inventoryService.deductStock(reservation));
+        verify(productRepository, never()).decrementStock(anyLong(), anyInt());
+    }
+
+    @Test
+    void deductStock_inTransaction_holdsReservationUntilCommit() {
+        Product product = new Product(1L, "Laptop", null, 10);
+        when(productRepository.decrementStock(1L, 3)).thenReturn(1);
+        Reservation reservation = inventoryService.lockStock(product, 3, "owner");
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            inventoryService.deductStock(reservation);
+
+            // Other transactions still see the old stock, so the units stay reserved
+            assertTrue(reservation.isActive());
+            assertEquals(3, reservationLedger.getReserved(1L));
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            assertEquals(Reservation.Status.COMMITTED, reservation.getStatus());
+            assertEquals(0, reservationLedger.getReserved(1L));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void deductStockAll_rolledBack_leavesReservationsActive() {
+        Map<Long, Product> products = Map.of(1L, new Product(1L, "Laptop", null, 10));
+        when(productRepository.decrementStock(1L, 2)).thenReturn(1);
+        ReservationBatch batch = inventoryService.reserveAll(List.of(new OrderItemRequest(1L, 2)), "owner", products);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            inventoryService.deductStockAll(List.of(batch));
+            TransactionSynchronizationManager.getSynchronizations().forEach(synchronization ->
+                    synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        // Still held, so a retry can deduct it or a failure can release it
+        assertEquals(1, reservationLedger.getActiveCount());
+        inventoryService.deductStock(batch);
+        assertEquals(0, reservationLedger.getActiveCount());
+    }
 }
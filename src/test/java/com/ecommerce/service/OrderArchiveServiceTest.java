@@ -0,0 +1,135 @@
+package com.ecommerce.service;
+
+import com.ecommerce.dto.OrderLine;
+import com.ecommerce.dto.OrderResponse;
+import com.ecommerce.model.ArchivedOrder;
+import com.ecommerce.model.Money;
+import com.ecommerce.model.Order;
+import com.ecommerce.repository.ArchivedOrderRepository;
+import com.ecommerce.repository.OrderRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+class OrderArchiveServiceTest {
+
+    private static final LocalDateTime CUTOFF = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private ArchivedOrderRepository archivedOrderRepository;
+
+    @Mock
+    private OrderResponseCache orderResponseCache;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private OrderArchiveService orderArchiveService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        orderArchiveService = new OrderArchiveService(orderRepository, archivedOrderRepository, orderResponseCache,
+                new TransactionTemplate(transactionManager), new ObjectMapper().registerModule(new JavaTimeModule()),
+                Duration.ofDays(90), 2, Duration.ofHours(1));
+        when(orderRepository.findLinesByOrderIdIn(anyCollection())).thenAnswer(invocation -> {
+            List<OrderLine> lines = new ArrayList<>();
+            for (Long id : invocation.<Collection<Long>>getArgument(0)) {
+                lines.add(line(id, id * 10));
+            }
+            return lines;
+        });
+    }
+
+    @Test
+    void archiveOrdersPlacedBefore_movesOrdersChunkByChunk() {
+        when(orderRepository.findIdsPlacedBefore(eq(CUTOFF), any(), any(Pageable.class)))
+                .thenReturn(List.of(1L, 2L), List.of(3L));
+
+        int archived = orderArchiveService.archiveOrdersPlacedBefore(CUTOFF);
+
+        assertEquals(3, archived);
+        assertEquals(3, orderArchiveService.getArchivedCount());
+        // A short chunk means nothing is left
+        verify(orderRepository, times(2)).findIdsPlacedBefore(eq(CUTOFF), any(), any(Pageable.class));
+        verify(transactionManager, times(2)).commit(any());
+        InOrder inOrder = inOrder(archivedOrderRepository, orderRepository);
+        inOrder.verify(archivedOrderRepository).saveAll(any());
+        inOrder.verify(orderRepository).deleteItemsByOrderIdIn(List.of(1L, 2L));
+        inOrder.verify(orderRepository).deleteByIdIn(List.of(1L, 2L));
+        verify(orderRepository).deleteByIdIn(List.of(3L));
+        verify(orderResponseCache).invalidate(1L);
+        verify(orderResponseCache).invalidate(3L);
+    }
+
+    @Test
+    void archiveOrdersPlacedBefore_onlyFinalOrders() {
+        when(orderRepository.findIdsPlacedBefore(any(), any(), any(Pageable.class))).thenReturn(List.of());
+
+        assertEquals(0, orderArchiveService.archiveOrdersPlacedBefore(CUTOFF));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<Order.OrderStatus>> statuses = ArgumentCaptor.forClass(Collection.class);
+        verify(orderRepository).findIdsPlacedBefore(eq(CUTOFF), statuses.capture(), any(Pageable.class));
+        assertFalse(statuses.getValue().contains(Order.OrderStatus.PENDING));
+        verify(orderRepository, never()).deleteByIdIn(any());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void findArchived_readsBackTheArchivedResponse() {
+        when(orderRepository.findIdsPlacedBefore(eq(CUTOFF), any(), any(Pageable.class))).thenReturn(List.of(7L));
+        orderArchiveService.archiveOrdersPlacedBefore(CUTOFF);
+        ArgumentCaptor<Iterable<ArchivedOrder>> saved = ArgumentCaptor.forClass(Iterable.class);
+        verify(archivedOrderRepository).saveAll(saved.capture());
+        ArchivedOrder archived = saved.getValue().iterator().next();
+        assertTrue(archived.isNew());
+        when(archivedOrderRepository.findById(7L)).thenReturn(Optional.of(archived));
+
+        OrderResponse order = orderArchiveService.findArchived(7L).orElseThrow();
+
+        assertEquals(7L, order.getId());
+        assertEquals("COMPLETED", order.getStatus());
+        assertEquals(Money.of("9.99"), order.getTotalAmount());
+        assertEquals(70L, order.getItems().get(0).getId());
+        assertTrue(orderArchiveService.findArchived(8L).isEmpty());
+    }
+
+    @Test
+    void archiveOldOrders_failure_isReportedNotThrown() {
+        when(orderRepository.findIdsPlacedBefore(any(), any(), any(Pageable.class)))
+                .thenThrow(new IllegalStateException("database down"));
+
+        assertEquals(0, orderArchiveService.archiveOldOrders());
+        verify(orderResponseCache, never()).invalidate(any());
+    }
+
+    private static OrderLine line(Long orderId, Long itemId) {
+        Money price = Money.of("9.99");
+        return new OrderLine(orderId, "Customer", "customer@example.com", price, Order.OrderStatus.COMPLETED,
+                CUTOFF.minusDays(orderId), itemId, 1L, "Mouse", 1, price, price);
+    }
+}
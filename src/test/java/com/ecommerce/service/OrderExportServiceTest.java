@@ -0,0 +1,109 @@
+package com.ecommerce.service;
+
+import com.ecommerce.dto.OrderLine;
+import com.ecommerce.model.Money;
+import com.ecommerce.model.Order;
+import com.ecommerce.repository.OrderRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class OrderExportServiceTest {
+
+    private static final LocalDateTime FROM = LocalDateTime.of(2024, 1, 15, 0, 0);
+    private static final LocalDateTime TO = FROM.plusDays(1);
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    private OrderExportService orderExportService;
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        orderExportService = new OrderExportService(orderRepository, objectMapper);
+    }
+
+    @Test
+    void exportNdjson_writesOneLinePerOrderWithItsItems() throws IOException {
+        when(orderRepository.streamLinesByOrderDate(FROM, TO)).thenReturn(Stream.of(
+                line(1L, 10L), line(1L, 11L), line(2L, null), line(3L, 12L)));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        long exported = orderExportService.exportNdjson(FROM, TO, output);
+
+        String[] lines = output.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(3, exported);
+        assertEquals(3, lines.length);
+        JsonNode first = objectMapper.readTree(lines[0]);
+        assertEquals(1, first.get("id").asLong());
+        assertEquals(2, first.get("items").size());
+        assertEquals(0, objectMapper.readTree(lines[1]).get("items").size());
+        assertEquals(3, objectMapper.readTree(lines[2]).get("id").asLong());
+        assertTrue(output.toString(StandardCharsets.UTF_8).endsWith("\n"));
+    }
+
+    @Test
+    void exportNdjson_flushesAsItGoesAndClosesTheCursor() {
+        AtomicBoolean closed = new AtomicBoolean();
+        int orders = OrderExportService.FLUSH_EVERY * 2 + 1;
+        when(orderRepository.streamLinesByOrderDate(FROM, TO)).thenReturn(
+                LongStream.rangeClosed(1, orders).mapToObj(id -> line(id, id)).onClose(() -> closed.set(true)));
+        AtomicInteger flushes = new AtomicInteger();
+        OutputStream output = new ByteArrayOutputStream() {
+            @Override
+            public void flush() {
+                flushes.incrementAndGet();
+            }
+        };
+
+        assertEquals(orders, orderExportService.exportNdjson(FROM, TO, output));
+
+        // Two full rounds, then the rest at the end
+        assertEquals(3, flushes.get());
+        assertTrue(closed.get());
+    }
+
+    @Test
+    void exportNdjson_writeFails_closesTheCursor() {
+        AtomicBoolean closed = new AtomicBoolean();
+        when(orderRepository.streamLinesByOrderDate(any(), any())).thenReturn(
+                Stream.of(line(1L, 10L), line(2L, 11L)).onClose(() -> closed.set(true)));
+        OutputStream output = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        assertThrows(UncheckedIOException.class, () -> orderExportService.exportNdjson(FROM, TO, output));
+        assertTrue(closed.get());
+    }
+
+    private static OrderLine line(Long orderId, Long itemId) {
+        Money price = Money.of("9.99");
+        return new OrderLine(orderId, "Customer", "customer@example.com", price, Order.OrderStatus.COMPLETED,
+                FROM.plusMinutes(orderId), itemId, itemId == null ? null : 1L, itemId == null ? null : "Mouse",
+                itemId == null ? null : 1, itemId == null ? null : price, itemId == null ? null : price);
+    }
+}
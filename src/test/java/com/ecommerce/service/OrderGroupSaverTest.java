@@ -0,0 +1,167 @@
+package com.ecommerce.service;
+
+import com.ecommerce.dto.OrderItemRequest;
+import com.ecommerce.model.Order;
+import com.ecommerce.model.Product;
+import com.ecommerce.repository.OrderRepository;
+import com.ecommerce.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class OrderGroupSaverTest {
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    private ReservationLedger reservationLedger;
+    private InventoryService inventoryService;
+    private FlushingTransactionManager transactionManager;
+    private OrderGroupSaver orderGroupSaver;
+    private final Map<Long, Product> products = Map.of(1L, new Product(1L, "Laptop", null, 10));
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        reservationLedger = new ReservationLedger(Duration.ofMinutes(5), Duration.ofMillis(100));
+        inventoryService = new InventoryService(productRepository, reservationLedger,
+                new ProductCache(1000, Duration.ofMinutes(10)));
+        transactionManager = new FlushingTransactionManager(order -> "bad".equals(order.getCustomerName()));
+        transactionManager.saving(orderRepository);
+        when(productRepository.decrementStock(anyLong(), anyInt())).thenReturn(1);
+        orderGroupSaver = new OrderGroupSaver(orderRepository, inventoryService, new TransactionTemplate(transactionManager));
+    }
+
+    @Test
+    void saveAll_groupCommits_savesEveryOrderInOneTransaction() {
+        List<OrderGroupSaver.SaveResult> results = orderGroupSaver.saveAll(
+                List.of(order("a"), order("b")), List.of(reservation("a"), reservation("b")));
+
+        assertTrue(results.get(0).isSaved());
+        assertTrue(results.get(1).isSaved());
+        assertEquals(1, transactionManager.getCommitCount());
+        verify(productRepository).decrementStock(1L, 4);
+        assertEquals(0, reservationLedger.getActiveCount());
+    }
+
+    @Test
+    void saveAll_insertFailsAtFlush_savesTheOtherOrders() {
+        List<OrderGroupSaver.SaveResult> results = orderGroupSaver.saveAll(
+                List.of(order("a"), order("bad"), order("c")),
+                List.of(reservation("a"), reservation("bad"), reservation("c")));
+
+        assertTrue(results.get(0).isSaved());
+        assertFalse(results.get(1).isSaved());
+        assertInstanceOf(DataIntegrityViolationException.class, results.get(1).getFailure());
+        assertTrue(results.get(2).isSaved());
+        assertNotNull(results.get(2).getOrder().getId());
+        // Only the failed order's reservation is left for the caller to release
+        assertEquals(1, reservationLedger.getActiveCount());
+        assertEquals(2, reservationLedger.getReserved(1L));
+    }
+
+    @Test
+    void saveAll_loneOrderFails_isNotRetried() {
+        List<OrderGroupSaver.SaveResult> results = orderGroupSaver.saveAll(
+                List.of(order("bad")), List.of(reservation("bad")));
+
+        assertFalse(results.get(0).isSaved());
+        verify(orderRepository, never()).save(any());
+        assertEquals(1, reservationLedger.getActiveCount());
+    }
+
+    private static Order order(String customer) {
+        Order order = new Order(customer, customer + "@example.com");
+        order.setStatus(Order.OrderStatus.COMPLETED);
+        return order;
+    }
+
+    private ReservationBatch reservation(String owner) {
+        return inventoryService.reserveAll(List.of(new OrderItemRequest(1L, 2)), owner, products);
+    }
+
+
+    // Transaction manager standing in for the JPA one: orders saved in a transaction are only
+    // inserted at commit, as they are with JDBC batching, and an insert failing there fails the
+    // commit. Runs transaction synchronizations like the real one.
+
+    static final class FlushingTransactionManager extends AbstractPlatformTransactionManager {
+        private final Predicate<Order> failsAtFlush;
+        private final List<Order> pending = new ArrayList<>();
+        private final AtomicLong nextOrderId = new AtomicLong();
+        private int commitCount;
+
+        FlushingTransactionManager(Predicate<Order> failsAtFlush) {
+            this.failsAtFlush = failsAtFlush;
+        }
+
+        // Make the repository's save and saveAll go through this transaction manager
+        void saving(OrderRepository orderRepository) {
+            doAnswer(invocation -> {
+                Iterable<Order> orders = invocation.getArgument(0);
+                List<Order> saved = new ArrayList<>();
+                orders.forEach(order -> saved.add(save(order)));
+                return saved;
+            }).when(orderRepository).saveAll(any());
+            doAnswer(invocation -> save(invocation.getArgument(0))).when(orderRepository).save(any());
+        }
+
+        int getCommitCount() {
+            return commitCount;
+        }
+
+        private Order save(Order order) {
+            order.setId(nextOrderId.incrementAndGet());
+            pending.add(order);
+            return order;
+        }
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+            pending.clear();
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+            for (Order order : pending) {
+                if (failsAtFlush.test(order)) {
+                    throw new DataIntegrityViolationException("Insert failed for order " + order.getId());
+                }
+            }
+            pending.clear();
+            commitCount++;
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+            pending.clear();
+        }
+    }
+}
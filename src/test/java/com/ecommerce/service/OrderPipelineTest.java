@@ -0,0 +1,120 @@
+package com.ecommerce.service;
+
+import com.ecommerce.exception.PaymentFailedException;
+import com.ecommerce.exception.ReservationExpiredException;
+import com.ecommerce.model.Money;
+import com.ecommerce.model.Order;
+import com.ecommerce.repository.OrderRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class OrderPipelineTest {
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private InventoryService inventoryService;
+
+    @Mock
+    private PaymentService paymentService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private OrderPipeline orderPipeline;
+    private Order order;
+    private ReservationBatch reservation;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        orderPipeline = new OrderPipeline(orderRepository, inventoryService, paymentService,
+                new TransactionTemplate(transactionManager), 1, 1, false);
+        orderPipeline.start();
+        order = new Order("John Doe", "john.doe@example.com");
+        order.setId(1L);
+        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
+        reservation = new ReservationBatch("john.doe@example.com",
+                List.of(new Reservation(1L, 1L, 2, "john.doe@example.com", Long.MAX_VALUE)), Map.of());
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        orderPipeline.stop();
+    }
+
+    @Test
+    void process_paymentSucceeds_completesAndDeducts() {
+        orderPipeline.process(1L, Money.of("119.98"), reservation);
+
+        assertEquals(Order.OrderStatus.COMPLETED, order.getStatus());
+        verify(paymentService).processPayment(Money.of("119.98"), "john.doe@example.com");
+        verify(inventoryService).deductStock(reservation);
+        verify(inventoryService, never()).releaseLock(any(ReservationBatch.class));
+        assertEquals(1, orderPipeline.getCompletedCount());
+    }
+
+    @Test
+    void process_paymentFails_cancelsAndReleases() {
+        doThrow(new PaymentFailedException()).when(paymentService).processPayment(any(), any());
+
+        orderPipeline.process(1L, Money.of("119.98"), reservation);
+
+        assertEquals(Order.OrderStatus.CANCELLED, order.getStatus());
+        verify(inventoryService).releaseLock(reservation);
+        verify(inventoryService, never()).deductStock(any(ReservationBatch.class));
+        verify(paymentService, never()).refundPayment(any(), any(), any());
+        assertEquals(1, orderPipeline.getCancelledCount());
+    }
+
+    @Test
+    void process_reservationExpired_cancelsAndRefunds() {
+        when(paymentService.processPayment(any(), any())).thenReturn("TXN-1");
+        doThrow(new ReservationExpiredException(1L)).when(inventoryService).deductStock(reservation);
+
+        orderPipeline.process(1L, Money.of("119.98"), reservation);
+
+        assertEquals(Order.OrderStatus.CANCELLED, order.getStatus());
+        verify(inventoryService).releaseLock(reservation);
+        verify(paymentService).refundPayment("TXN-1", Money.of("119.98"), "john.doe@example.com");
+    }
+
+    @Test
+    void admissions_areBoundedByWorkersPlusQueue() throws InterruptedException {
+        CountDownLatch paying = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(paymentService.processPayment(any(), any())).thenAnswer(invocation -> {
+            paying.countDown();
+            release.await();
+            return "TXN-1";
+        });
+
+        assertTrue(orderPipeline.tryAdmit());
+        orderPipeline.submit(1L, Money.ofCents(1000), reservation);
+        assertTrue(paying.await(1, TimeUnit.SECONDS));
+        assertTrue(orderPipeline.tryAdmit());
+        assertFalse(orderPipeline.tryAdmit());
+        assertEquals(2, orderPipeline.getInProgressCount());
+
+        orderPipeline.cancelAdmission();
+        release.countDown();
+        orderPipeline.stop();
+        assertEquals(0, orderPipeline.getInProgressCount());
+    }
+}
@@ -0,0 +1,80 @@
+package com.ecommerce.service;
+
+import com.ecommerce.dto.OrderItemResponse;
+import com.ecommerce.dto.OrderResponse;
+import com.ecommerce.model.Money;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderResponseCacheTest {
+
+    private OrderResponseCache orderResponseCache;
+
+    @BeforeEach
+    void setUp() {
+        orderResponseCache = new OrderResponseCache(new ObjectMapper().findAndRegisterModules(), 2);
+    }
+
+    @Test
+    void put_finalOrder_isServedFromCache() {
+        OrderResponseCache.CachedOrder stored = orderResponseCache.put(order(1L, "COMPLETED"));
+        OrderResponseCache.CachedOrder cached = orderResponseCache.get(1L);
+
+        assertSame(stored, cached);
+        assertTrue(cached.isCacheable());
+        assertTrue(new String(cached.getBody(), StandardCharsets.UTF_8).contains("\"status\":\"COMPLETED\""));
+        assertEquals(1, orderResponseCache.getHitCount());
+    }
+
+    @Test
+    void put_pendingOrder_isNotCached() {
+        OrderResponseCache.CachedOrder response = orderResponseCache.put(order(1L, "PENDING"));
+
+        assertFalse(response.isCacheable());
+        assertNull(orderResponseCache.get(1L));
+        assertEquals(1, orderResponseCache.getMissCount());
+    }
+
+    @Test
+    void etag_followsTheBody() {
+        String completed = orderResponseCache.put(order(1L, "COMPLETED")).getEtag();
+        String sameAgain = orderResponseCache.put(order(1L, "COMPLETED")).getEtag();
+        String cancelled = orderResponseCache.put(order(1L, "CANCELLED")).getEtag();
+
+        assertTrue(completed.startsWith("\"") && completed.endsWith("\""));
+        assertEquals(completed, sameAgain);
+        assertNotEquals(completed, cancelled);
+    }
+
+    @Test
+    void put_full_evictsOldest() {
+        orderResponseCache.put(order(1L, "COMPLETED"));
+        orderResponseCache.put(order(2L, "COMPLETED"));
+        orderResponseCache.put(order(3L, "CANCELLED"));
+
+        assertEquals(2, orderResponseCache.size());
+        assertNull(orderResponseCache.get(1L));
+        assertNotNull(orderResponseCache.get(3L));
+    }
+
+    @Test
+    void invalidate_dropsOrder() {
+        orderResponseCache.put(order(1L, "COMPLETED"));
+        orderResponseCache.invalidate(1L);
+
+        assertNull(orderResponseCache.get(1L));
+    }
+
+    private static OrderResponse order(Long id, String status) {
+        return new OrderResponse(id, "John Doe", "john.doe@example.com", Money.of("59.99"), status,
+                LocalDateTime.of(2024, 1, 15, 10, 30),
+                List.of(new OrderItemResponse(1L, 1L, "Laptop", 1, Money.of("59.99"), Money.of("59.99"))));
+    }
+}
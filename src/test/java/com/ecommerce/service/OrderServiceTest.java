@@ -1,23 +1,34 @@
 package com.ecommerce.service;
 
 import com.ecommerce.dto.OrderItemRequest;
+import com.ecommerce.dto.OrderLine;
+import com.ecommerce.dto.OrderPage;
 import com.ecommerce.dto.OrderRequest;
+import com.ecommerce.exception.InvalidCursorException;
 import com.ecommerce.exception.OrderNotFoundException;
+import com.ecommerce.exception.OrderQueueFullException;
 import com.ecommerce.exception.OutOfStockException;
 import com.ecommerce.exception.PaymentFailedException;
 import com.ecommerce.exception.ProductNotFoundException;
+import com.ecommerce.model.Money;
 import com.ecommerce.model.Product;
 import com.ecommerce.repository.OrderRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Optional;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -35,7 +46,18 @@ class OrderServiceTest {
     @Mock
     private PaymentService paymentService;
 
-    @InjectMocks
+    @Mock
+    private OrderPipeline orderPipeline;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private OrderWriter orderWriter;
+
+    @Mock
+    private OrderArchiveService orderArchiveService;
+
     private OrderService orderService;
 
     private Product product1;
@@ -44,8 +66,10 @@ class OrderServiceTest {
 
     @BeforeEach
     void setUp() {
-        product1 = new Product(1L, "Laptop", new BigDecimal("59.99"), 10);
-        product2 = new Product(2L, "Mouse", new BigDecimal("29.99"), 50);
+        orderService = new OrderService(orderRepository, inventoryService, paymentService, orderPipeline,
+                new TransactionTemplate(transactionManager), orderWriter, orderArchiveService);
+        product1 = new Product(1L, "Laptop", Money.of("59.99"), 10);
+        product2 = new Product(2L, "Mouse", Money.of("29.99"), 50);
 
         OrderItemRequest item1 = new OrderItemRequest(1L, 2);
         OrderItemRequest item2 = new OrderItemRequest(2L, 1);
@@ -55,18 +79,17 @@ class OrderServiceTest {
 
     @Test
     void testCreateOrder_Success() {
+        ReservationBatch reservation = reservationFor(product1, product2);
+
         // Mocking dependencies
-        when(inventoryService.getProduct(1L)).thenReturn(product1);
-        when(inventoryService.getProduct(2L)).thenReturn(product2);
-        doNothing().when(inventoryService).lockStock(anyLong(), anyInt());
-        doNothing().when(paymentService).processPayment(any(), any());
+        when(inventoryService.reserveAll(orderRequest.getItems(), "john.doe@example.com")).thenReturn(reservation);
+        when(paymentService.processPayment(any(), any())).thenReturn("TXN-1");
         when(orderRepository.save(any())).thenAnswer(invocation -> {
             // Simulate saving and returning an order with an ID
             com.ecommerce.model.Order order = invocation.getArgument(0);
             order.setId(1L);
             return order;
         });
-        doNothing().when(inventoryService).deductStock(anyLong(), anyInt());
 
         // Call the service method
         com.ecommerce.dto.OrderResponse orderResponse = orderService.createOrder(orderRequest);
@@ -74,84 +97,191 @@ class OrderServiceTest {
         // Assertions
         assertNotNull(orderResponse);
         assertEquals(1L, orderResponse.getId());
-        assertEquals(com.ecommerce.model.Order.OrderStatus.COMPLETED, orderResponse.getStatus());
+        assertEquals(com.ecommerce.model.Order.OrderStatus.COMPLETED.name(), orderResponse.getStatus());
         assertEquals(2, orderResponse.getItems().size());
+        assertEquals(Money.of("149.97"), orderResponse.getTotalAmount());
 
         // Verify interactions with dependencies
-        verify(inventoryService, times(1)).getProduct(1L);
-        verify(inventoryService, times(1)).getProduct(2L);
-        verify(inventoryService, times(1)).lockStock(1L, 2);
-        verify(inventoryService, times(1)).lockStock(2L, 1);
+        verify(inventoryService, times(1)).reserveAll(orderRequest.getItems(), "john.doe@example.com");
+        verify(inventoryService, never()).getProduct(anyLong());
         verify(paymentService, times(1)).processPayment(any(), any());
         verify(orderRepository, times(1)).save(any());
-        verify(inventoryService, times(1)).deductStock(1L, 2);
-        verify(inventoryService, times(1)).deductStock(2L, 1);
+        verify(inventoryService, times(1)).deductStock(reservation);
+        verify(inventoryService, never()).releaseLock(any(ReservationBatch.class));
+    }
+
+    @Test
+    void testCreateOrder_PaysBeforeOpeningTheTransaction() {
+        ReservationBatch reservation = reservationFor(product1, product2);
+        when(inventoryService.reserveAll(orderRequest.getItems(), "john.doe@example.com")).thenReturn(reservation);
+        when(paymentService.processPayment(any(), any())).thenReturn("TXN-1");
+        when(orderRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        orderService.createOrder(orderRequest);
+
+        // The only transaction is the one saving the order, opened once the payment is done
+        InOrder inOrder = inOrder(paymentService, transactionManager, orderRepository, inventoryService);
+        inOrder.verify(paymentService).processPayment(any(), any());
+        inOrder.verify(transactionManager).getTransaction(any());
+        inOrder.verify(orderRepository).save(any());
+        inOrder.verify(inventoryService).deductStock(reservation);
+        inOrder.verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void testCreateOrder_DeductFailsAfterPayment_RefundsAndReleases() {
+        ReservationBatch reservation = reservationFor(product1, product2);
+        when(inventoryService.reserveAll(orderRequest.getItems(), "john.doe@example.com")).thenReturn(reservation);
+        when(paymentService.processPayment(any(), any())).thenReturn("TXN-1");
+        doThrow(new OutOfStockException("Laptop", 1, 2)).when(inventoryService).deductStock(reservation);
+
+        assertThrows(OutOfStockException.class, () -> orderService.createOrder(orderRequest));
+
+        verify(transactionManager, times(1)).rollback(any());
+        verify(paymentService, times(1)).refundPayment("TXN-1", Money.of("149.97"), "john.doe@example.com");
+        verify(inventoryService, times(1)).releaseLock(reservation);
+    }
+
+    @Test
+    void testCreateOrder_GroupCommit_WritesThroughOrderWriter() {
+        ReservationBatch reservation = reservationFor(product1, product2);
+        when(inventoryService.reserveAll(orderRequest.getItems(), "john.doe@example.com")).thenReturn(reservation);
+        when(paymentService.processPayment(any(), any())).thenReturn("TXN-1");
+        when(orderWriter.isEnabled()).thenReturn(true);
+        when(orderWriter.write(any(), eq(reservation))).thenAnswer(invocation -> {
+            com.ecommerce.model.Order order = invocation.getArgument(0);
+            order.setId(7L);
+            return CompletableFuture.completedFuture(order);
+        });
+
+        com.ecommerce.dto.OrderResponse orderResponse = orderService.createOrder(orderRequest);
+
+        assertEquals(7L, orderResponse.getId());
+        assertEquals(com.ecommerce.model.Order.OrderStatus.COMPLETED.name(), orderResponse.getStatus());
+        verify(orderRepository, never()).save(any());
+        verify(transactionManager, never()).getTransaction(any());
+    }
+
+    @Test
+    void testCreateOrder_GroupCommitFails_RefundsAndReleases() {
+        ReservationBatch reservation = reservationFor(product1, product2);
+        when(inventoryService.reserveAll(orderRequest.getItems(), "john.doe@example.com")).thenReturn(reservation);
+        when(paymentService.processPayment(any(), any())).thenReturn("TXN-1");
+        when(orderWriter.isEnabled()).thenReturn(true);
+        when(orderWriter.write(any(), eq(reservation)))
+                .thenReturn(CompletableFuture.failedFuture(new OutOfStockException("Laptop", 1, 2)));
+
+        assertThrows(OutOfStockException.class, () -> orderService.createOrder(orderRequest));
+
+        verify(paymentService, times(1)).refundPayment("TXN-1", Money.of("149.97"), "john.doe@example.com");
+        verify(inventoryService, times(1)).releaseLock(reservation);
     }
 
     @Test
     void testCreateOrder_OutOfStock() {
-        // Mocking dependencies for out of stock scenario
-        when(inventoryService.getProduct(1L)).thenReturn(product1);
-        when(inventoryService.getProduct(2L)).thenReturn(product2);
-        doThrow(new OutOfStockException("Laptop", 5, 10))
-                .when(inventoryService).lockStock(1L, 2);
+        // Mocking dependencies for out of stock scenario; reserveAll takes nothing when it fails
+        when(inventoryService.reserveAll(orderRequest.getItems(), "john.doe@example.com"))
+                .thenThrow(new OutOfStockException("Laptop", 5, 10));
 
         // Call the service method and assert that OutOfStockException is thrown
         assertThrows(OutOfStockException.class, () -> orderService.createOrder(orderRequest));
 
-        // Verify that releaseLock is called for the item that was attempted to be locked
-        verify(inventoryService, times(1)).releaseLock(1L, 2);
         // Verify that other methods were not called after the exception
+        verify(inventoryService, never()).releaseLock(any(ReservationBatch.class));
         verify(paymentService, times(0)).processPayment(any(), any());
         verify(orderRepository, times(0)).save(any());
-        verify(inventoryService, times(0)).deductStock(anyLong(), anyInt());
+        verify(inventoryService, times(0)).deductStock(any(ReservationBatch.class));
     }
 
     @Test
     void testCreateOrder_PaymentFailed() {
+        ReservationBatch reservation = reservationFor(product1, product2);
+
         // Mocking dependencies for payment failed scenario
-        when(inventoryService.getProduct(1L)).thenReturn(product1);
-        when(inventoryService.getProduct(2L)).thenReturn(product2);
-        doNothing().when(inventoryService).lockStock(anyLong(), anyInt());
+        when(inventoryService.reserveAll(orderRequest.getItems(), "john.doe@example.com")).thenReturn(reservation);
         doThrow(new PaymentFailedException("Payment failed"))
                 .when(paymentService).processPayment(any(), any());
 
         // Call the service method and assert that PaymentFailedException is thrown
         assertThrows(PaymentFailedException.class, () -> orderService.createOrder(orderRequest));
 
-        // Verify that releaseLock is called for all items when payment fails
-        verify(inventoryService, times(1)).releaseLock(1L, 2);
-        verify(inventoryService, times(1)).releaseLock(2L, 1);
+        // Verify that the whole batch is released once when payment fails
+        verify(inventoryService, times(1)).releaseLock(reservation);
+        verify(paymentService, never()).refundPayment(any(), any(), any());
         // Verify that other methods were not called after the exception
         verify(orderRepository, times(0)).save(any());
-        verify(inventoryService, times(0)).deductStock(anyLong(), anyInt());
+        verify(inventoryService, times(0)).deductStock(any(ReservationBatch.class));
     }
 
      @Test
     void testCreateOrder_ProductNotFound() {
         // Mocking dependencies for product not found scenario
-        when(inventoryService.getProduct(1L)).thenReturn(product1);
-        when(inventoryService.getProduct(2L)).thenThrow(new ProductNotFoundException(2L));
+        when(inventoryService.reserveAll(orderRequest.getItems(), "john.doe@example.com"))
+                .thenThrow(new ProductNotFoundException(2L));
 
         // Call the service method and assert that ProductNotFoundException is thrown
         assertThrows(ProductNotFoundException.class, () -> orderService.createOrder(orderRequest));
 
-        // Verify that releaseLock is called for the product that was found and locked before the exception
-        verify(inventoryService, times(1)).lockStock(1L, 2);
-        verify(inventoryService, times(1)).releaseLock(1L, 2);
+        // Products are validated together before anything is locked
+        verify(inventoryService, never()).releaseLock(any(ReservationBatch.class));
 
         // Verify that other methods were not called after the exception
         verify(paymentService, times(0)).processPayment(any(), any());
         verify(orderRepository, times(0)).save(any());
-        verify(inventoryService, times(0)).deductStock(anyLong(), anyInt());
+        verify(inventoryService, times(0)).deductStock(any(ReservationBatch.class));
+    }
+
+    @Test
+    void testSubmitOrder_SavesPendingAndHandsOverToPipeline() {
+        ReservationBatch reservation = reservationFor(product1, product2);
+        when(orderPipeline.tryAdmit()).thenReturn(true);
+        when(inventoryService.reserveAll(orderRequest.getItems(), "john.doe@example.com")).thenReturn(reservation);
+        when(orderRepository.save(any())).thenAnswer(invocation -> {
+            com.ecommerce.model.Order order = invocation.getArgument(0);
+            order.setId(7L);
+            return order;
+        });
+
+        com.ecommerce.dto.OrderResponse orderResponse = orderService.submitOrder(orderRequest);
+
+        assertEquals(7L, orderResponse.getId());
+        assertEquals(com.ecommerce.model.Order.OrderStatus.PENDING.name(), orderResponse.getStatus());
+        assertEquals(Money.of("149.97"), orderResponse.getTotalAmount());
+        // Payment and deduction are left to the pipeline
+        verify(orderPipeline, times(1)).submit(7L, Money.of("149.97"), reservation);
+        verify(paymentService, never()).processPayment(any(), any());
+        verify(inventoryService, never()).deductStock(any(ReservationBatch.class));
+    }
+
+    @Test
+    void testSubmitOrder_PipelineFull_ReservesNothing() {
+        when(orderPipeline.tryAdmit()).thenReturn(false);
+
+        assertThrows(OrderQueueFullException.class, () -> orderService.submitOrder(orderRequest));
+
+        verify(inventoryService, never()).reserveAll(any(), any());
+        verify(orderRepository, never()).save(any());
+    }
+
+    @Test
+    void testSubmitOrder_OutOfStock_GivesAdmissionBack() {
+        when(orderPipeline.tryAdmit()).thenReturn(true);
+        when(inventoryService.reserveAll(orderRequest.getItems(), "john.doe@example.com"))
+                .thenThrow(new OutOfStockException("Laptop", 5, 10));
+
+        assertThrows(OutOfStockException.class, () -> orderService.submitOrder(orderRequest));
+
+        verify(orderPipeline, times(1)).cancelAdmission();
+        verify(orderPipeline, never()).submit(any(), any(), any());
     }
 
     @Test
     void testGetOrder_Success() {
-        // Mocking repository response
-        com.ecommerce.model.Order mockOrder = new com.ecommerce.model.Order();
-        mockOrder.setId(1L);
-        when(orderRepository.findById(1L)).thenReturn(Optional.of(mockOrder));
+        // Mocking repository response: one projection row per item
+        java.time.LocalDateTime orderDate = java.time.LocalDateTime.now();
+        when(orderRepository.findLinesByOrderIdIn(List.of(1L))).thenReturn(List.of(
+                line(1L, orderDate, 10L, product1, 2),
+                line(1L, orderDate, 11L, product2, 1)));
 
         // Call the service method
         com.ecommerce.dto.OrderResponse orderResponse = orderService.getOrder(1L);
@@ -159,20 +289,138 @@ class OrderServiceTest {
         // Assertions
         assertNotNull(orderResponse);
         assertEquals(1L, orderResponse.getId());
+        assertEquals(com.ecommerce.model.Order.OrderStatus.COMPLETED.name(), orderResponse.getStatus());
+        assertEquals(2, orderResponse.getItems().size());
+        assertEquals(10L, orderResponse.getItems().get(0).getId());
+        assertEquals("Mouse", orderResponse.getItems().get(1).getProductName());
 
-        // Verify repository interaction
-        verify(orderRepository, times(1)).findById(1L);
+        // One query, no entities loaded
+        verify(orderRepository, times(1)).findLinesByOrderIdIn(List.of(1L));
+        verify(orderRepository, never()).findById(any());
+    }
+
+    @Test
+    void testGetOrder_WithoutItems() {
+        when(orderRepository.findLinesByOrderIdIn(List.of(1L))).thenReturn(List.of(
+                new OrderLine(1L, "John Doe", "john.doe@example.com", Money.ZERO,
+                        com.ecommerce.model.Order.OrderStatus.CANCELLED, java.time.LocalDateTime.now(),
+                        null, null, null, null, null, null)));
+
+        com.ecommerce.dto.OrderResponse orderResponse = orderService.getOrder(1L);
+
+        assertEquals(1L, orderResponse.getId());
+        assertTrue(orderResponse.getItems().isEmpty());
     }
 
     @Test
     void testGetOrder_NotFound() {
         // Mocking repository response for not found scenario
-        when(orderRepository.findById(2L)).thenReturn(Optional.empty());
+        when(orderRepository.findLinesByOrderIdIn(List.of(2L))).thenReturn(List.of());
+        when(orderArchiveService.findArchived(2L)).thenReturn(java.util.Optional.empty());
 
         // Call the service method and assert that OrderNotFoundException is thrown
         assertThrows(OrderNotFoundException.class, () -> orderService.getOrder(2L));
 
         // Verify repository interaction
-        verify(orderRepository, times(1)).findById(2L);
+        verify(orderRepository, times(1)).findLinesByOrderIdIn(List.of(2L));
+    }
+
+    @Test
+    void testGetOrder_Archived() {
+        com.ecommerce.dto.OrderResponse archived = new com.ecommerce.dto.OrderResponse(3L, "John Doe",
+                "john.doe@example.com", Money.of("29.99"), "COMPLETED", java.time.LocalDateTime.now(), List.of());
+        when(orderRepository.findLinesByOrderIdIn(List.of(3L))).thenReturn(List.of());
+        when(orderArchiveService.findArchived(3L)).thenReturn(java.util.Optional.of(archived));
+
+        assertSame(archived, orderService.getOrder(3L));
+    }
+
+    @Test
+    void testOrderResponseFromLines_GroupsRowsByOrder() {
+        java.time.LocalDateTime orderDate = java.time.LocalDateTime.now();
+
+        List<com.ecommerce.dto.OrderResponse> responses = com.ecommerce.dto.OrderResponse.fromLines(List.of(
+                line(1L, orderDate, 10L, product1, 2),
+                line(1L, orderDate, 11L, product2, 1),
+                line(2L, orderDate, 12L, product1, 1)));
+
+        assertEquals(2, responses.size());
+        assertEquals(2, responses.get(0).getItems().size());
+        assertEquals(2L, responses.get(1).getId());
+        assertEquals(1, responses.get(1).getItems().size());
+    }
+
+    @Test
+    void testGetCustomerOrders_PagesWithCursor() {
+        java.time.LocalDateTime newer = java.time.LocalDateTime.of(2024, 1, 15, 10, 30);
+        java.time.LocalDateTime older = newer.minusDays(1);
+        // Three orders, newest first: 3 (newer), 1 (newer, same time), 2 (older)
+        when(orderRepository.findHistoryIds("john.doe@example.com", PageRequest.ofSize(3))).thenReturn(List.of(3L, 1L, 2L));
+        when(orderRepository.findLinesByOrderIdIn(List.of(3L, 1L))).thenReturn(List.of(
+                line(1L, newer, 10L, product1, 1),
+                line(3L, newer, 11L, product2, 1)));
+
+        OrderPage first = orderService.getCustomerOrders("john.doe@example.com", null, 2);
+
+        assertEquals(List.of(3L, 1L), first.getOrders().stream().map(com.ecommerce.dto.OrderResponse::getId).toList());
+        assertNotNull(first.getNextCursor());
+
+        when(orderRepository.findHistoryIdsAfter("john.doe@example.com", newer, 1L, PageRequest.ofSize(3))).thenReturn(List.of(2L));
+        when(orderRepository.findLinesByOrderIdIn(List.of(2L))).thenReturn(List.of(line(2L, older, 12L, product1, 1)));
+
+        OrderPage second = orderService.getCustomerOrders("john.doe@example.com", first.getNextCursor(), 2);
+
+        assertEquals(1, second.getOrders().size());
+        assertEquals(2L, second.getOrders().get(0).getId());
+        assertNull(second.getNextCursor());
+    }
+
+    @Test
+    void testGetCustomerOrders_NoOrders() {
+        when(orderRepository.findHistoryIds("john.doe@example.com", PageRequest.ofSize(21))).thenReturn(List.of());
+
+        OrderPage page = orderService.getCustomerOrders("john.doe@example.com", null, 20);
+
+        assertTrue(page.getOrders().isEmpty());
+        assertNull(page.getNextCursor());
+        verify(orderRepository, never()).findLinesByOrderIdIn(any());
+    }
+
+    @Test
+    void testGetCustomerOrders_LiveOrdersOnly() {
+        // The customer's older orders were archived; the history ends with the last live one
+        when(orderRepository.findHistoryIds("john.doe@example.com", PageRequest.ofSize(21))).thenReturn(List.of(3L));
+        when(orderRepository.findLinesByOrderIdIn(List.of(3L)))
+                .thenReturn(List.of(line(3L, java.time.LocalDateTime.now(), 13L, product1, 1)));
+
+        OrderPage page = orderService.getCustomerOrders("john.doe@example.com", null, 20);
+
+        assertEquals(1, page.getOrders().size());
+        assertNull(page.getNextCursor());
+        verifyNoInteractions(orderArchiveService);
+    }
+
+    @Test
+    void testGetCustomerOrders_InvalidCursor() {
+        assertThrows(InvalidCursorException.class,
+                () -> orderService.getCustomerOrders("john.doe@example.com", "not-a-cursor", 20));
+        verifyNoInteractions(orderRepository);
+    }
+
+    private static OrderLine line(Long orderId, java.time.LocalDateTime orderDate, Long itemId, Product product, int quantity) {
+        Money subtotal = product.getPrice().times(quantity);
+        return new OrderLine(orderId, "John Doe", "john.doe@example.com", Money.of("149.97"),
+                com.ecommerce.model.Order.OrderStatus.COMPLETED, orderDate,
+                itemId, product.getId(), product.getName(), quantity, product.getPrice(), subtotal);
+    }
+
+    private ReservationBatch reservationFor(Product... products) {
+        List<Reservation> reservations = new ArrayList<>();
+        Map<Long, Product> byId = new HashMap<>();
+        for (Product product : products) {
+            reservations.add(new Reservation(product.getId(), product.getId(), 1, "john.doe@example.com", Long.MAX_VALUE));
+            byId.put(product.getId(), product);
+        }
+        return new ReservationBatch("john.doe@example.com", reservations, byId);
     }
 }
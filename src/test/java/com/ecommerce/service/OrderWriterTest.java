@@ -0,0 +1,214 @@
+package com.ecommerce.service;
+
+import com.ecommerce.exception.OutOfStockException;
+import com.ecommerce.model.Order;
+import com.ecommerce.repository.OrderRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class OrderWriterTest {
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private InventoryService inventoryService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private OrderWriter orderWriter;
+    private final AtomicLong nextOrderId = new AtomicLong();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(orderRepository.saveAll(any())).thenAnswer(invocation -> {
+            Iterable<Order> orders = invocation.getArgument(0);
+            List<Order> saved = new ArrayList<>();
+            for (Order order : orders) {
+                order.setId(nextOrderId.incrementAndGet());
+                saved.add(order);
+            }
+            return saved;
+        });
+        when(orderRepository.save(any())).thenAnswer(invocation -> {
+            Order order = invocation.getArgument(0);
+            order.setId(nextOrderId.incrementAndGet());
+            return order;
+        });
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (orderWriter != null) {
+            orderWriter.stop();
+        }
+    }
+
+    @Test
+    void write_ordersWithinWindow_shareOneTransaction() throws Exception {
+        orderWriter = start(Duration.ofMillis(200), 10);
+
+        List<CompletableFuture<Order>> results = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            results.add(orderWriter.write(order("customer" + i), reservation("customer" + i)));
+        }
+        for (CompletableFuture<Order> result : results) {
+            assertNotNull(result.get(5, TimeUnit.SECONDS).getId());
+        }
+
+        assertEquals(1, orderWriter.getGroupCount());
+        assertEquals(5, orderWriter.getWrittenCount());
+        verify(transactionManager, times(1)).commit(any());
+        verify(inventoryService, times(1)).deductStockAll(any());
+    }
+
+    @Test
+    void write_fullGroup_isWrittenWithoutWaitingForTheWindow() throws Exception {
+        orderWriter = start(Duration.ofSeconds(30), 2);
+
+        long start = System.nanoTime();
+        CompletableFuture<Order> first = orderWriter.write(order("a"), reservation("a"));
+        CompletableFuture<Order> second = orderWriter.write(order("b"), reservation("b"));
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+    }
+
+    @Test
+    void write_loneOrder_waitsNoLongerThanTheWindow() throws Exception {
+        orderWriter = start(Duration.ofMillis(20), 64);
+
+        long start = System.nanoTime();
+        Order saved = orderWriter.write(order("a"), reservation("a")).get(5, TimeUnit.SECONDS);
+
+        assertNotNull(saved.getId());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        assertEquals(1, orderWriter.getGroupCount());
+    }
+
+    @Test
+    void write_racingStop_neverLeavesACallerWaiting() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            OrderWriter writer = start(Duration.ofMillis(1), 4);
+            List<CompletableFuture<Order>> results = Collections.synchronizedList(new ArrayList<>());
+            List<Thread> callers = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                Thread caller = new Thread(() -> {
+                    try {
+                        while (true) {
+                            results.add(writer.write(order("a"), reservation("a")));
+                        }
+                    } catch (IllegalStateException e) {
+                        // Stopped
+                    }
+                });
+                caller.start();
+                callers.add(caller);
+            }
+            Thread.sleep(5);
+            writer.stop();
+            for (Thread caller : callers) {
+                caller.join(5_000);
+            }
+
+            // Saved or failed, but done
+            CompletableFuture.allOf(results.toArray(new CompletableFuture[0]))
+                    .handle((ignored, failure) -> null)
+                    .get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void writeGroup_groupFails_writesOrdersOneByOne() {
+        orderWriter = new OrderWriter(saver(new TransactionTemplate(transactionManager)),
+                false, Duration.ofMillis(1), 64, 16);
+        ReservationBatch good = reservation("a");
+        ReservationBatch bad = reservation("b");
+        doThrow(new OutOfStockException("Laptop", 1, 2)).when(inventoryService).deductStockAll(any(Collection.class));
+        doThrow(new OutOfStockException("Laptop", 1, 2)).when(inventoryService).deductStock(bad);
+        OrderWriter.PendingWrite first = new OrderWriter.PendingWrite(order("a"), good);
+        OrderWriter.PendingWrite second = new OrderWriter.PendingWrite(order("b"), bad);
+
+        orderWriter.writeGroup(List.of(first, second));
+
+        assertTrue(first.result.isDone() && !first.result.isCompletedExceptionally());
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> second.result.get());
+        assertInstanceOf(OutOfStockException.class, failure.getCause());
+        verify(inventoryService).deductStock(good);
+        assertEquals(1, orderWriter.getWrittenCount());
+    }
+
+    @Test
+    void writeGroup_insertFailsAtFlush_writesTheOtherOrders() {
+        OrderGroupSaverTest.FlushingTransactionManager flushingManager =
+                new OrderGroupSaverTest.FlushingTransactionManager(order -> "b".equals(order.getCustomerName()));
+        flushingManager.saving(orderRepository);
+        orderWriter = new OrderWriter(saver(new TransactionTemplate(flushingManager)), false, Duration.ofMillis(1), 64, 16);
+        OrderWriter.PendingWrite first = new OrderWriter.PendingWrite(order("a"), reservation("a"));
+        OrderWriter.PendingWrite second = new OrderWriter.PendingWrite(order("b"), reservation("b"));
+        OrderWriter.PendingWrite third = new OrderWriter.PendingWrite(order("c"), reservation("c"));
+
+        orderWriter.writeGroup(List.of(first, second, third));
+
+        assertTrue(first.result.isDone() && !first.result.isCompletedExceptionally());
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> second.result.get());
+        assertInstanceOf(DataIntegrityViolationException.class, failure.getCause());
+        assertTrue(third.result.isDone() && !third.result.isCompletedExceptionally());
+        assertEquals(2, orderWriter.getWrittenCount());
+    }
+
+    @Test
+    void write_disabled_isRejected() {
+        orderWriter = new OrderWriter(saver(new TransactionTemplate(transactionManager)),
+                false, Duration.ofMillis(1), 64, 16);
+        orderWriter.start();
+
+        assertFalse(orderWriter.isEnabled());
+        assertThrows(IllegalStateException.class, () -> orderWriter.write(order("a"), reservation("a")));
+    }
+
+    private OrderWriter start(Duration window, int maxBatch) {
+        OrderWriter writer = new OrderWriter(saver(new TransactionTemplate(transactionManager)), true, window, maxBatch, 16);
+        writer.start();
+        return writer;
+    }
+
+    private OrderGroupSaver saver(TransactionTemplate transactionTemplate) {
+        return new OrderGroupSaver(orderRepository, inventoryService, transactionTemplate);
+    }
+
+    private static Order order(String customer) {
+        Order order = new Order(customer, customer + "@example.com");
+        order.setStatus(Order.OrderStatus.COMPLETED);
+        return order;
+    }
+
+    private static ReservationBatch reservation(String owner) {
+        return new ReservationBatch(owner, List.of(), Map.of());
+    }
+}
@@ -1,13 +1,13 @@
 package com.ecommerce.service;
 
 import com.ecommerce.exception.PaymentFailedException;
+import com.ecommerce.model.Money;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
-import java.math.BigDecimal;
 import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -30,7 +30,7 @@ class PaymentServiceTest {
     void processPayment_success() {
         when(random.nextDouble()).thenReturn(0.8); // Simulate success chance
 
-        BigDecimal amount = new BigDecimal("100.00");
+        Money amount = Money.of("100.00");
         String customerEmail = "test@example.com";
 
         String transactionId = paymentService.processPayment(amount, customerEmail);
@@ -43,9 +43,19 @@ class PaymentServiceTest {
     void processPayment_failure() {
         when(random.nextDouble()).thenReturn(0.1); // Simulate failure chance
 
-        BigDecimal amount = new BigDecimal("100.00");
+        Money amount = Money.of("100.00");
         String customerEmail = "test@example.com";
 
         assertThrows(PaymentFailedException.class, () -> paymentService.processPayment(amount, customerEmail));
     }
+
+    @Test
+    void processPayment_transactionIdsAreUnique() {
+        when(random.nextDouble()).thenReturn(0.8);
+
+        String first = paymentService.processPayment(Money.ofCents(100), "test@example.com");
+        String second = paymentService.processPayment(Money.ofCents(100), "test@example.com");
+
+        assertNotEquals(first, second);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,116 @@
+package com.ecommerce.service;
+
+import com.ecommerce.model.Money;
+import com.ecommerce.model.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductCacheTest {
+
+    private ProductCache productCache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        productCache = new ProductCache(2, Duration.ofMinutes(10));
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    void get_secondRead_isServedFromCache() {
+        productCache.get(1L, this::load);
+        Optional<Product> product = productCache.get(1L, this::load);
+
+        assertEquals("Product 1", product.orElseThrow().getName());
+        assertEquals(1, loads.get());
+        assertEquals(1, productCache.getHitCount());
+        assertEquals(1, productCache.getMissCount());
+    }
+
+    @Test
+    void get_returnsCopies() {
+        productCache.get(1L, this::load).orElseThrow().setStockQuantity(0);
+
+        assertEquals(10, productCache.get(1L, this::load).orElseThrow().getStockQuantity());
+    }
+
+    @Test
+    void get_missingProduct_isNotCached() {
+        assertTrue(productCache.get(1L, id -> Optional.empty()).isEmpty());
+
+        assertEquals(0, productCache.size());
+    }
+
+    @Test
+    void get_overCapacity_evictsOldest() {
+        productCache.get(1L, this::load);
+        productCache.get(2L, this::load);
+        productCache.get(3L, this::load);
+
+        assertEquals(2, productCache.size());
+        assertEquals(1, productCache.getEvictionCount());
+        productCache.get(1L, this::load);
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    void get_afterTtl_reloads() {
+        ProductCache expiring = new ProductCache(10, Duration.ZERO);
+
+        expiring.get(1L, this::load);
+        expiring.get(1L, this::load);
+
+        assertEquals(2, loads.get());
+        assertEquals(1, expiring.getExpirationCount());
+    }
+
+    @Test
+    void invalidate_dropsProduct() {
+        productCache.get(1L, this::load);
+
+        productCache.invalidate(1L);
+        productCache.get(1L, this::load);
+
+        assertEquals(2, loads.get());
+        assertEquals(1, productCache.getInvalidationCount());
+    }
+
+    @Test
+    void invalidate_duringLoad_keepsStaleRowOutOfCache() {
+        // The stock is deducted while the row is being read
+        Optional<Product> product = productCache.get(1L, id -> {
+            Optional<Product> loaded = load(id);
+            productCache.invalidate(1L);
+            return loaded;
+        });
+
+        assertTrue(product.isPresent());
+        assertEquals(0, productCache.size());
+    }
+
+    @Test
+    void getAll_loadsOnlyMisses() {
+        productCache.get(1L, this::load);
+
+        Map<Long, Product> products = productCache.getAll(List.of(1L, 2L), ids -> {
+            assertEquals(List.of(2L), List.copyOf(ids));
+            return ids.stream().map(id -> load(id).orElseThrow()).toList();
+        });
+
+        assertEquals(2, products.size());
+        assertEquals(2, productCache.size());
+    }
+
+    private Optional<Product> load(Long productId) {
+        loads.incrementAndGet();
+        return Optional.of(new Product(productId, "Product " + productId, Money.ofCents(1000), 10));
+    }
+}
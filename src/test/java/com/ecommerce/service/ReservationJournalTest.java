@@ -0,0 +1,208 @@
+package com.ecommerce.service;
+
+import com.ecommerce.model.Money;
+import com.ecommerce.model.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReservationJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private final List<ReservationLedger> ledgers = new ArrayList<>();
+    private final List<ReservationJournal> journals = new ArrayList<>();
+    private Product laptop;
+    private Product mouse;
+
+    @BeforeEach
+    void setUp() {
+        laptop = new Product(1L, "Laptop", Money.of("59.99"), 10);
+        mouse = new Product(2L, "Mouse", Money.of("29.99"), 10);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ledgers.forEach(ReservationLedger::stopSweeper);
+        journals.forEach(ReservationJournal::close);
+    }
+
+    @Test
+    void restart_restoresActiveReservationsOnly() throws InterruptedException {
+        ReservationLedger ledger = startLedger(1 << 20);
+        Reservation kept = ledger.reserve(laptop, 3, "john@example.com");
+        Reservation released = ledger.reserve(laptop, 2, "jane@example.com");
+        Reservation committed = ledger.reserve(mouse, 4, "jane@example.com");
+        ledger.release(released);
+        ledger.commit(committed);
+        crash(ledger);
+
+        ReservationLedger recovered = startLedger(1 << 20);
+
+        assertEquals(1, recovered.getActiveCount());
+        assertEquals(3, recovered.getReserved(1L));
+        assertEquals(0, recovered.getReserved(2L));
+        Reservation restored = recovered.getReservation(kept.getId());
+        assertEquals("john@example.com", restored.getOwner());
+        assertEquals(kept.getDeadline(), restored.getDeadline());
+        assertTrue(recovered.reserve(laptop, 1, "owner").getId() > committed.getId());
+    }
+
+    @Test
+    void restart_afterRollover_replaysSnapshotPlusTail() throws InterruptedException {
+        // Small segments force several rollovers and snapshots
+        ReservationLedger ledger = startLedger(4096);
+        Product big = new Product(3L, "Cable", Money.ofCents(100), 100_000);
+        List<Reservation> kept = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            Reservation reservation = ledger.reserve(big, 1, "owner");
+            if (i % 10 == 0) {
+                kept.add(reservation);
+            } else {
+                ledger.release(reservation);
+            }
+        }
+        crash(ledger);
+
+        ReservationLedger recovered = startLedger(4096);
+
+        assertEquals(kept.size(), recovered.getActiveCount());
+        assertEquals(kept.size(), recovered.getReserved(3L));
+        for (Reservation reservation : kept) {
+            assertNotNull(recovered.getReservation(reservation.getId()));
+        }
+    }
+
+    @Test
+    void restart_ignoresTornRecordAtTail() throws IOException, InterruptedException {
+        ReservationLedger ledger = startLedger(1 << 20);
+        ledger.reserve(laptop, 3, "owner");
+        Reservation lost = ledger.reserve(laptop, 2, "owner");
+        crash(ledger);
+
+        // Corrupt one byte of the last record, as a crash mid-write would
+        Path segment = latestSegment();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            int first = mapped.getInt(0);
+            int last = first + 8 + 1 + 8; // product ID of the second record
+            mapped.put(last, (byte) (mapped.get(last) + 1));
+        }
+
+        ReservationLedger recovered = startLedger(1 << 20);
+
+        assertEquals(1, recovered.getActiveCount());
+        assertEquals(3, recovered.getReserved(1L));
+        assertNull(recovered.getReservation(lost.getId()));
+    }
+
+    @Test
+    void restart_expiresReservationsPastTheirDeadline() throws InterruptedException {
+        ReservationLedger ledger = startLedger(1 << 20);
+        Reservation reservation = ledger.reserve(laptop, 3, "owner");
+        crash(ledger);
+
+        ReservationLedger recovered = startLedger(1 << 20);
+        recovered.expireDue(reservation.getDeadline() + 1_000);
+
+        assertEquals(0, recovered.getActiveCount());
+        assertEquals(0, recovered.getReserved(1L));
+        assertEquals(1, recovered.getExpiredCount());
+    }
+
+    @Test
+    void snapshot_oversizedOwner_isTruncated() throws IOException {
+        ReservationLedger ledger = startLedger(1 << 20);
+        Reservation reservation = ledger.reserve(laptop, 3, "x".repeat(70_000));
+        ledger.stopSweeper();
+        journals.remove(journals.size() - 1).close();
+
+        // The shutdown snapshot covers the old segments, so they are gone
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(List.of("journal-0000000000000002.log", "snapshot-0000000000000002.bin"),
+                    files.map(file -> file.getFileName().toString()).sorted().toList());
+        }
+        ReservationLedger recovered = startLedger(1 << 20);
+
+        assertEquals("x".repeat(1024), recovered.getReservation(reservation.getId()).getOwner());
+    }
+
+    @Test
+    void rolloverDuringSnapshot_isSnapshottedToo() throws InterruptedException {
+        ReservationJournal journal = new ReservationJournal(directory, 4096, Duration.ofMillis(5));
+        journals.add(journal);
+        AtomicLong nextId = new AtomicLong();
+        AtomicBoolean rolledOverDuringSnapshot = new AtomicBoolean();
+        journal.recover(() -> {
+            // The first snapshot (for segment 2) is taken while segment 3 is being opened
+            if (rolledOverDuringSnapshot.compareAndSet(false, true)) {
+                fillUntilExists(journal, nextId, segment(3));
+            }
+            return List.of();
+        });
+
+        fillUntilExists(journal, nextId, segment(2));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (!Files.exists(directory.resolve("snapshot-0000000000000003.bin")) && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(rolledOverDuringSnapshot.get());
+        assertTrue(Files.exists(directory.resolve("snapshot-0000000000000003.bin")));
+    }
+
+    private static void fillUntilExists(ReservationJournal journal, AtomicLong nextId, Path segment) {
+        while (!Files.exists(segment)) {
+            journal.recordReserve(new Reservation(nextId.incrementAndGet(), 1L, 1, "owner", Long.MAX_VALUE));
+        }
+    }
+
+    private Path segment(long seq) {
+        return directory.resolve(String.format("journal-%016d.log", seq));
+    }
+
+    private ReservationLedger startLedger(int segmentSize) {
+        ReservationJournal journal = new ReservationJournal(directory, segmentSize, Duration.ofMillis(5));
+        ReservationLedger ledger = new ReservationLedger(Duration.ofSeconds(30), Duration.ofMillis(10),
+                Optional.of(journal), new AtomicReservedStock());
+        ledger.startSweeper();
+        ledgers.add(ledger);
+        journals.add(journal);
+        return ledger;
+    }
+
+    // Stop without the shutdown snapshot, leaving only what the journal segments hold
+    private void crash(ReservationLedger ledger) throws InterruptedException {
+        ledger.stopSweeper();
+        ReservationJournal journal = journals.remove(journals.size() - 1);
+        journal.abandon();
+    }
+
+    private Path latestSegment() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".log"))
+                    .sorted()
+                    .reduce((first, second) -> second)
+                    .orElseThrow();
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.ecommerce.service;
+
+import com.ecommerce.exception.OutOfStockException;
+import com.ecommerce.model.Money;
+import com.ecommerce.model.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReservationLedgerTest {
+
+    private ReservationLedger reservationLedger;
+    private Product laptop;
+    private Product mouse;
+
+    @BeforeEach
+    void setUp() {
+        reservationLedger = new ReservationLedger(Duration.ofSeconds(1), Duration.ofMillis(10));
+        laptop = new Product(1L, "Laptop", Money.of("59.99"), 10);
+        mouse = new Product(2L, "Mouse", Money.of("29.99"), 10);
+    }
+
+    @Test
+    void reserve_sufficientStock_reservesQuantity() {
+        Reservation reservation = reservationLedger.reserve(laptop, 4, "john@example.com");
+
+        assertEquals(4, reservationLedger.getReserved(1L));
+        assertEquals(1L, reservation.getProductId());
+        assertEquals(4, reservation.getQuantity());
+        assertEquals("john@example.com", reservation.getOwner());
+        assertSame(reservation, reservationLedger.getReservation(reservation.getId()));
+    }
+
+    @Test
+    void reserve_insufficientStock_throwsAndReservesNothing() {
+        reservationLedger.reserve(laptop, 8, "owner");
+
+        OutOfStockException e = assertThrows(OutOfStockException.class,
+                () -> reservationLedger.reserve(laptop, 3, "owner"));
+
+        assertTrue(e.getMessage().contains("Available: 2"));
+        assertEquals(8, reservationLedger.getReserved(1L));
+        assertEquals(1, reservationLedger.getActiveCount());
+    }
+
+    @Test
+    void reserve_differentProducts_areIndependent() {
+        reservationLedger.reserve(laptop, 10, "owner");
+        reservationLedger.reserve(mouse, 5, "owner");
+
+        assertEquals(10, reservationLedger.getReserved(1L));
+        assertEquals(5, reservationLedger.getReserved(2L));
+    }
+
+    @Test
+    void release_onlyOnce() {
+        Reservation reservation = reservationLedger.reserve(laptop, 3, "owner");
+
+        assertTrue(reservationLedger.release(reservation));
+        assertFalse(reservationLedger.release(reservation));
+        assertFalse(reservationLedger.commit(reservation));
+
+        assertEquals(0, reservationLedger.getReserved(1L));
+        assertEquals(0, reservationLedger.getActiveCount());
+    }
+
+    @Test
+    void expireDue_abandonedReservation_givesStockBack() {
+        Reservation abandoned = reservationLedger.reserve(laptop, 3, "owner");
+        Reservation committed = reservationLedger.reserve(laptop, 2, "owner");
+        reservationLedger.commit(committed);
+
+        reservationLedger.expireDue(abandoned.getDeadline() + 1_000);
+
+        assertEquals(Reservation.Status.EXPIRED, abandoned.getStatus());
+        assertEquals(Reservation.Status.COMMITTED, committed.getStatus());
+        assertEquals(0, reservationLedger.getReserved(1L));
+        assertEquals(1, reservationLedger.getExpiredCount());
+        assertFalse(reservationLedger.commit(abandoned));
+    }
+
+    @Test
+    void expireDue_beforeDeadline_keepsReservation() {
+        Reservation reservation = reservationLedger.reserve(laptop, 3, "owner");
+
+        reservationLedger.expireDue(reservation.getDeadline() - 500);
+
+        assertTrue(reservation.isActive());
+        assertEquals(3, reservationLedger.getReserved(1L));
+        assertEquals(0, reservationLedger.getExpiredCount());
+    }
+
+    @Test
+    void enableHotMode_poolsAvailableStock() {
+        reservationLedger.reserve(laptop, 3, "owner");
+
+        assertTrue(reservationLedger.enableHotMode(laptop, 4));
+        assertFalse(reservationLedger.enableHotMode(laptop, 4));
+
+        assertTrue(reservationLedger.isHot(1L));
+        assertEquals(3, reservationLedger.getReserved(1L));
+    }
+
+    @Test
+    void enableHotMode_invalidBucketCount_keepsStockAvailable() {
+        reservationLedger.reserve(laptop, 3, "owner");
+
+        assertThrows(IllegalArgumentException.class, () -> reservationLedger.enableHotMode(laptop, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> reservationLedger.enableHotMode(laptop, Integer.MAX_VALUE));
+
+        assertFalse(reservationLedger.isHot(1L));
+        assertEquals(3, reservationLedger.getReserved(1L));
+        assertEquals(7, reservationLedger.reserve(laptop, 7, "owner").getQuantity());
+    }
+
+    @Test
+    void reserve_hotProduct_takesFromPool() {
+        reservationLedger.enableHotMode(laptop, 4);
+
+        Reservation reservation = reservationLedger.reserve(laptop, 6, "owner");
+
+        assertTrue(reservation.isPooled());
+        assertEquals(6, reservationLedger.getReserved(1L));
+        OutOfStockException e = assertThrows(OutOfStockException.class,
+                () -> reservationLedger.reserve(laptop, 5, "owner"));
+        assertTrue(e.getMessage().contains("Available: 4"));
+    }
+
+    @Test
+    void releaseAndCommit_hotProduct_keepExactTotal() {
+        reservationLedger.enableHotMode(laptop, 4);
+        Reservation released = reservationLedger.reserve(laptop, 3, "owner");
+        Reservation committed = reservationLedger.reserve(laptop, 2, "owner");
+
+        reservationLedger.release(released);
+        reservationLedger.commit(committed);
+        // The product's stock drops by the committed quantity once it is deducted
+        laptop.setStockQuantity(8);
+
+        assertEquals(0, reservationLedger.getReserved(1L));
+        assertEquals(8, reservationLedger.reserve(laptop, 8, "owner").getQuantity());
+    }
+
+    @Test
+    void disableHotMode_returnsPooledStockToCounter() {
+        reservationLedger.enableHotMode(laptop, 4);
+        Reservation reservation = reservationLedger.reserve(laptop, 3, "owner");
+
+        assertTrue(reservationLedger.disableHotMode(1L));
+        assertEquals(3, reservationLedger.getReserved(1L));
+
+        reservationLedger.release(reservation);
+        assertEquals(0, reservationLedger.getReserved(1L));
+        assertFalse(reservationLedger.reserve(laptop, 10, "owner").isPooled());
+    }
+
+    @Test
+    void reserve_concurrentRequests_neverOversell() throws Exception {
+        int threads = 16;
+        int attemptsPerThread = 1_000;
+        int stock = 5_000;
+        Product product = new Product(3L, "Keyboard", Money.of("39.99"), stock);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                int granted = 0;
+                for (int i = 0; i < attemptsPerThread; i++) {
+                    try {
+                        reservationLedger.reserve(product, 1, "owner");
+                        granted++;
+                    } catch (OutOfStockException e) {
+                        // expected once the stock is gone
+                    }
+                }
+                return granted;
+            }));
+        }
+        start.countDown();
+
+        int granted = 0;
+        for (Future<Integer> result : results) {
+            granted += result.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(stock, granted);
+        assertEquals(stock, reservationLedger.getReserved(3L));
+    }
+
+    @Test
+    void reserve_ringBufferEngine_neverOversells() throws Exception {
+        ReservationLedger ledger = new ReservationLedger(Duration.ofSeconds(1), Duration.ofMillis(10),
+                Optional.empty(), new RingBufferReservedStock(2, 64));
+        Product product = new Product(5L, "Webcam", Money.of("49.99"), 500);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Integer>> results = new ArrayList<>();
+
+        for (int t = 0; t < 8; t++) {
+            results.add(executor.submit(() -> {
+                int granted = 0;
+                for (int i = 0; i < 100; i++) {
+                    try {
+                        ledger.reserve(product, 1, "owner");
+                        granted++;
+                    } catch (OutOfStockException e) {
+                        // expected once the stock is gone
+                    }
+                }
+                return granted;
+            }));
+        }
+
+        int granted = 0;
+        for (Future<Integer> result : results) {
+            granted += result.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        ledger.stopSweeper();
+
+        assertEquals(500, granted);
+        assertEquals(500, ledger.getActiveCount());
+    }
+
+    @Test
+    void reserve_hotProductConcurrentRequests_neverOversell() throws Exception {
+        int threads = 16;
+        int stock = 5_000;
+        Product product = new Product(4L, "Console", Money.of("399.99"), stock);
+        reservationLedger.enableHotMode(product, 8);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                int granted = 0;
+                for (int i = 0; i < 1_000; i++) {
+                    try {
+                        Reservation reservation = reservationLedger.reserve(product, 1, "owner");
+                        granted++;
+                        if (i % 3 == 0) {
+                            reservationLedger.release(reservation);
+                            granted--;
+                        }
+                    } catch (OutOfStockException e) {
+                        // expected once the stock is gone
+                    }
+                }
+                return granted;
+            }));
+        }
+        start.countDown();
+
+        int granted = 0;
+        for (Future<Integer> result : results) {
+            granted += result.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(granted, reservationLedger.getReserved(4L));
+        assertTrue(granted <= stock);
+    }
+}
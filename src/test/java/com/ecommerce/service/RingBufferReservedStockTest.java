@@ -0,0 +1,125 @@
+package com.ecommerce.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RingBufferReservedStockTest {
+
+    private RingBufferReservedStock reservedStock;
+
+    @BeforeEach
+    void setUp() {
+        // A small ring, so the concurrent tests also run with producers waiting for free slots
+        reservedStock = new RingBufferReservedStock(2, 8);
+    }
+
+    @AfterEach
+    void tearDown() {
+        reservedStock.close();
+    }
+
+    @Test
+    void reserve_sufficientStock_reservesAndReturnsAvailable() {
+        assertEquals(10, reservedStock.reserve(1L, 4, 10));
+        assertEquals(6, reservedStock.reserve(1L, 6, 10));
+
+        assertEquals(10, reservedStock.get(1L));
+    }
+
+    @Test
+    void reserve_insufficientStock_reservesNothing() {
+        reservedStock.reserve(1L, 8, 10);
+
+        assertEquals(2, reservedStock.reserve(1L, 3, 10));
+        assertEquals(8, reservedStock.get(1L));
+    }
+
+    @Test
+    void reserveRemaining_takesWhateverIsLeft() {
+        reservedStock.reserve(1L, 3, 10);
+
+        assertEquals(7, reservedStock.reserveRemaining(1L, 10));
+        assertEquals(0, reservedStock.reserveRemaining(1L, 10));
+        assertEquals(10, reservedStock.get(1L));
+    }
+
+    @Test
+    void add_isVisibleToTheCallerRightAway() {
+        reservedStock.reserve(1L, 5, 10);
+        reservedStock.add(1L, -5);
+
+        assertEquals(0, reservedStock.get(1L));
+        assertEquals(0, reservedStock.get(99L));
+    }
+
+    @Test
+    void manyProducts_growTablesWithoutLosingCounts() {
+        for (long id = -500; id < 500; id++) {
+            reservedStock.reserve(id, (int) Math.abs(id % 7) + 1, 100);
+        }
+
+        for (long id = -500; id < 500; id++) {
+            assertEquals((int) Math.abs(id % 7) + 1, reservedStock.get(id));
+        }
+    }
+
+    @Test
+    void reserve_concurrentRequests_neverOversell() throws Exception {
+        int threads = 16;
+        int stock = 5_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                int granted = 0;
+                for (int i = 0; i < 1_000; i++) {
+                    if (reservedStock.reserve(3L, 1, stock) >= 1) {
+                        granted++;
+                        if (i % 4 == 0) {
+                            reservedStock.add(3L, -1);
+                            granted--;
+                        }
+                    }
+                }
+                return granted;
+            }));
+        }
+        start.countDown();
+
+        int granted = 0;
+        for (Future<Integer> result : results) {
+            granted += result.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(granted, reservedStock.get(3L));
+        assertTrue(granted <= stock);
+    }
+
+    @Test
+    void close_rejectsNewCommands() {
+        reservedStock.close();
+
+        assertThrows(IllegalStateException.class, () -> reservedStock.reserve(1L, 1, 10));
+    }
+
+    @Test
+    void create_unknownEngine_isRejected() {
+        assertThrows(IllegalArgumentException.class, () -> ReservedStock.create("disruptor", 4, 1024));
+        assertThrows(IllegalArgumentException.class, () -> ReservedStock.create("ring-buffer", 4, 1000));
+    }
+}
@@ -0,0 +1,241 @@
+package com.ecommerce.service;
+
+import com.ecommerce.dto.StockLevelEvent;
+import com.ecommerce.model.Money;
+import com.ecommerce.model.Product;
+import com.ecommerce.repository.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class StockLevelPublisherTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    private ReservationLedger reservationLedger;
+    private StockLevelPublisher stockLevelPublisher;
+    private Product laptop;
+    private Product mouse;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        laptop = new Product(1L, "Laptop", Money.of("59.99"), 10);
+        mouse = new Product(2L, "Mouse", Money.of("29.99"), 50);
+        when(productRepository.findAllById(any())).thenAnswer(invocation -> {
+            Iterable<Long> ids = invocation.getArgument(0);
+            List<Product> products = new ArrayList<>();
+            for (Long id : ids) {
+                products.add(id == 1L ? laptop : id == 2L ? mouse : new Product(id, "Product " + id, Money.ofCents(100), 10));
+            }
+            return products;
+        });
+
+        reservationLedger = new ReservationLedger(Duration.ofMinutes(5), Duration.ofMillis(100));
+        // A zero-size cache, so every flush sees the current stock
+        InventoryService inventoryService = new InventoryService(productRepository, reservationLedger,
+                new ProductCache(0, Duration.ZERO));
+        // Long interval: the tests flush by hand
+        stockLevelPublisher = new StockLevelPublisher(inventoryService, reservationLedger,
+                Duration.ofHours(1), Duration.ofMinutes(1), 2, 1, Duration.ofMillis(50));
+        stockLevelPublisher.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        stockLevelPublisher.stop();
+    }
+
+    @Test
+    void register_sendsCurrentLevelsFirst() throws InterruptedException {
+        reservationLedger.reserve(laptop, 3, "owner");
+        RecordingSink sink = new RecordingSink();
+
+        stockLevelPublisher.register(List.of(1L), sink);
+
+        StockLevelEvent event = sink.next();
+        assertEquals(1L, event.getProductId());
+        assertEquals(10, event.getStockQuantity());
+        assertEquals(7, event.getAvailableQuantity());
+    }
+
+    @Test
+    void flush_coalescesChangesPerProduct() throws InterruptedException {
+        RecordingSink sink = new RecordingSink();
+        stockLevelPublisher.register(Set.of(), sink);
+
+        for (int i = 0; i < 5; i++) {
+            reservationLedger.reserve(laptop, 1, "owner");
+        }
+        stockLevelPublisher.flush();
+
+        assertEquals(5, sink.next().getAvailableQuantity());
+        assertNull(sink.events.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void flush_onlySendsFollowedProducts() throws InterruptedException {
+        RecordingSink sink = new RecordingSink();
+        stockLevelPublisher.register(List.of(2L), sink);
+        sink.next(); // current level
+
+        reservationLedger.reserve(laptop, 1, "owner");
+        reservationLedger.reserve(mouse, 4, "owner");
+        stockLevelPublisher.flush();
+
+        StockLevelEvent event = sink.next();
+        assertEquals(2L, event.getProductId());
+        assertEquals(46, event.getAvailableQuantity());
+        assertNull(sink.events.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void slowSubscriber_buffersBoundedAndDropsOldest() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingSink slow = new RecordingSink(release);
+        stockLevelPublisher.register(Set.of(), slow);
+
+        // The first event occupies the sender; the next ones queue up
+        reservationLedger.reserve(laptop, 1, "owner");
+        stockLevelPublisher.flush();
+        slow.awaitSending();
+        for (long id = 3; id <= 6; id++) {
+            reservationLedger.reserve(new Product(id, "Product " + id, Money.ofCents(100), 10), 1, "owner");
+        }
+        stockLevelPublisher.flush();
+        release.countDown();
+
+        assertEquals(1L, slow.next().getProductId());
+        assertNotNull(slow.next());
+        assertNotNull(slow.next());
+        assertNull(slow.events.poll(100, TimeUnit.MILLISECONDS));
+        assertEquals(2, stockLevelPublisher.getDroppedCount());
+    }
+
+    @Test
+    void failingSubscriber_isRemoved() throws InterruptedException {
+        RecordingSink sink = new RecordingSink();
+        sink.fail = true;
+        stockLevelPublisher.register(Set.of(), sink);
+
+        reservationLedger.reserve(laptop, 1, "owner");
+        stockLevelPublisher.flush();
+
+        assertTrue(sink.closed.await(1, TimeUnit.SECONDS));
+        assertEquals(0, stockLevelPublisher.getSubscriberCount());
+    }
+
+    @Test
+    void stalledSubscriber_isDroppedWithoutStarvingTheOthers() throws InterruptedException {
+        // Blocks like a write to a dead connection: ignores the interrupt until released
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingSink stalled = new RecordingSink(release);
+        stalled.uninterruptible = true;
+        stockLevelPublisher.register(Set.of(), stalled);
+        reservationLedger.reserve(laptop, 1, "owner");
+        stockLevelPublisher.flush();
+        stalled.awaitSending();
+
+        Thread.sleep(100);
+        try {
+            // close() waits on the blocked send, as SseEmitter.complete() does, so closing the
+            // sink here would hang the flusher
+            assertTimeoutPreemptively(Duration.ofSeconds(1), () -> stockLevelPublisher.dropStalled());
+
+            assertEquals(1, stockLevelPublisher.getStalledCount());
+            assertEquals(0, stockLevelPublisher.getSubscriberCount());
+            // The only sender is still blocked; a stand-in serves the next subscriber
+            RecordingSink healthy = new RecordingSink();
+            stockLevelPublisher.register(List.of(2L), healthy);
+            assertEquals(2L, healthy.next().getProductId());
+            assertEquals(1, stalled.closed.getCount());
+        } finally {
+            release.countDown();
+        }
+
+        // Closed by its sender once the write returns
+        assertTrue(stalled.closed.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void markChanged_withoutSubscribers_recordsNothing() {
+        reservationLedger.reserve(laptop, 1, "owner");
+        stockLevelPublisher.flush();
+
+        verify(productRepository, never()).findAllById(any());
+    }
+
+    // Sends and closes under one monitor, like SseEmitter
+    private static class RecordingSink implements StockLevelPublisher.Sink {
+        final BlockingQueue<StockLevelEvent> events = new LinkedBlockingQueue<>();
+        final CountDownLatch closed = new CountDownLatch(1);
+        final CountDownLatch sending = new CountDownLatch(1);
+        final CountDownLatch release;
+        volatile boolean fail;
+        volatile boolean uninterruptible;
+
+        RecordingSink() {
+            this(new CountDownLatch(0));
+        }
+
+        RecordingSink(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public synchronized void send(StockLevelEvent event) throws IOException {
+            if (fail) {
+                throw new IOException("Broken pipe");
+            }
+            sending.countDown();
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    release.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    if (!uninterruptible) {
+                        break;
+                    }
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            events.add(event);
+        }
+
+        @Override
+        public synchronized void close() {
+            closed.countDown();
+        }
+
+        StockLevelEvent next() throws InterruptedException {
+            StockLevelEvent event = events.poll(1, TimeUnit.SECONDS);
+            assertNotNull(event, "expected an event");
+            return event;
+        }
+
+        void awaitSending() throws InterruptedException {
+            assertTrue(sending.await(1, TimeUnit.SECONDS));
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.ecommerce.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StripedStockCounterTest {
+
+    @Test
+    void constructor_spreadsStockExactly() {
+        StripedStockCounter counter = new StripedStockCounter(4, 10);
+
+        assertEquals(10, counter.sum());
+        assertEquals(4, counter.bucketCount());
+    }
+
+    @Test
+    void take_stealsFromNeighbouringBuckets() {
+        StripedStockCounter counter = new StripedStockCounter(4, 10);
+
+        assertTrue(counter.take(9));
+        assertEquals(1, counter.sum());
+    }
+
+    @Test
+    void take_moreThanAvailable_takesNothing() {
+        StripedStockCounter counter = new StripedStockCounter(4, 10);
+
+        assertFalse(counter.take(11));
+        assertEquals(10, counter.sum());
+    }
+
+    @Test
+    void drain_emptiesAllBuckets() {
+        StripedStockCounter counter = new StripedStockCounter(4, 10);
+        counter.put(5);
+
+        assertEquals(15, counter.drain());
+        assertEquals(0, counter.sum());
+        assertFalse(counter.take(1));
+    }
+
+    @Test
+    void take_concurrentRequests_preserveExactTotal() throws Exception {
+        int threads = 16;
+        int stock = 4_000;
+        StripedStockCounter counter = new StripedStockCounter(8, stock);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                int taken = 0;
+                for (int i = 0; i < 1_000; i++) {
+                    if (counter.take(1)) {
+                        taken++;
+                    }
+                    // Give some back now and then so buckets keep moving
+                    if (i % 10 == 0 && taken > 0) {
+                        counter.put(1);
+                        taken--;
+                    }
+                }
+                return taken;
+            }));
+        }
+        start.countDown();
+
+        int taken = 0;
+        for (Future<Integer> result : results) {
+            taken += result.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(stock, taken + counter.sum());
+    }
+}
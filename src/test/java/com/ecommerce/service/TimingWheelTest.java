@@ -0,0 +1,98 @@
+package com.ecommerce.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+
+    private TimingWheel<String> wheel;
+    private List<String> expired;
+
+    @BeforeEach
+    void setUp() {
+        // 10 ms ticks, 8 buckets: level 0 spans 80 ms, level 1 spans 640 ms
+        wheel = new TimingWheel<>(10, 8, 0);
+        expired = new ArrayList<>();
+    }
+
+    @Test
+    void schedule_pastDeadline_returnsFalse() {
+        assertFalse(wheel.schedule("late", 0));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void advanceTo_firesOnlyDueEntries() {
+        wheel.schedule("a", 25);
+        wheel.schedule("b", 60);
+
+        wheel.advanceTo(29, expired::add);
+        assertTrue(expired.isEmpty());
+
+        wheel.advanceTo(30, expired::add);
+        assertEquals(List.of("a"), expired);
+
+        wheel.advanceTo(59, expired::add);
+        assertEquals(List.of("a"), expired);
+
+        wheel.advanceTo(60, expired::add);
+        assertEquals(List.of("a", "b"), expired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void advanceTo_neverFiresEarly() {
+        wheel.schedule("a", 21);
+
+        wheel.advanceTo(20, expired::add);
+        assertTrue(expired.isEmpty());
+
+        wheel.advanceTo(30, expired::add);
+        assertEquals(List.of("a"), expired);
+    }
+
+    @Test
+    void advanceTo_cascadesFromOverflowLevels() {
+        wheel.schedule("level1", 300);
+        wheel.schedule("level2", 5_000);
+        assertEquals(2, wheel.size());
+
+        wheel.advanceTo(299, expired::add);
+        assertTrue(expired.isEmpty());
+
+        wheel.advanceTo(300, expired::add);
+        assertEquals(List.of("level1"), expired);
+
+        wheel.advanceTo(4_999, expired::add);
+        assertEquals(List.of("level1"), expired);
+
+        wheel.advanceTo(5_000, expired::add);
+        assertEquals(List.of("level1", "level2"), expired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void advanceTo_manyEntries_allFireInOrderOfDeadline() {
+        for (int deadline = 10_000; deadline > 0; deadline -= 7) {
+            wheel.schedule(String.valueOf(deadline), deadline);
+        }
+
+        List<Long> firedAt = new ArrayList<>();
+        for (long now = 0; now <= 10_000; now += 10) {
+            long time = now;
+            wheel.advanceTo(now, item -> {
+                assertTrue(Long.parseLong(item) <= time, item + " fired early at " + time);
+                assertTrue(Long.parseLong(item) > time - 10, item + " fired late at " + time);
+                firedAt.add(time);
+            });
+        }
+
+        assertEquals(1_429, firedAt.size());
+        assertEquals(0, wheel.size());
+    }
+}